@@ -0,0 +1,67 @@
+// Attack queries on the GUI's Piece[][] board. They look outward from the target square along
+// rays and knight/pawn/king offsets and stop at the first attacker found.
+public final class Attacks {
+    private static final int[][] KNIGHT_DELTAS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_DELTAS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    private Attacks() {
+    }
+
+    public static boolean isSquareAttacked(Piece[][] board, int row, int col, PieceColor attacker) {
+        // White pawns move up the board (towards row 0), so they attack from the row below
+        int pawnRow = attacker == PieceColor.WHITE ? row + 1 : row - 1;
+        if (pawnRow >= 0 && pawnRow < 8) {
+            if (col > 0 && isPiece(board[pawnRow][col - 1], Pawn.class, attacker)) return true;
+            if (col < 7 && isPiece(board[pawnRow][col + 1], Pawn.class, attacker)) return true;
+        }
+        for (int[] delta : KNIGHT_DELTAS) {
+            int r = row + delta[0];
+            int c = col + delta[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8 && isPiece(board[r][c], Knight.class, attacker)) return true;
+        }
+        for (int[] delta : KING_DELTAS) {
+            int r = row + delta[0];
+            int c = col + delta[1];
+            if (r >= 0 && r < 8 && c >= 0 && c < 8 && isPiece(board[r][c], King.class, attacker)) return true;
+        }
+        return isAttackedAlongRays(board, row, col, attacker, ROOK_DIRECTIONS, Rook.class)
+                || isAttackedAlongRays(board, row, col, attacker, BISHOP_DIRECTIONS, Bishop.class);
+    }
+
+    public static boolean isInCheck(Piece[][] board, PieceColor color) {
+        PieceColor opponent = color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (isPiece(board[r][c], King.class, color)) {
+                    return isSquareAttacked(board, r, c, opponent);
+                }
+            }
+        }
+        return false;
+    }
+
+    // The first piece met along each ray attacks the square if it is a queen or the given slider
+    private static boolean isAttackedAlongRays(Piece[][] board, int row, int col, PieceColor attacker,
+                                               int[][] directions, Class<? extends Piece> slider) {
+        for (int[] dir : directions) {
+            int r = row + dir[0];
+            int c = col + dir[1];
+            while (r >= 0 && r < 8 && c >= 0 && c < 8) {
+                Piece piece = board[r][c];
+                if (piece != null) {
+                    if (piece.color == attacker && (slider.isInstance(piece) || piece instanceof Queen)) return true;
+                    break;
+                }
+                r += dir[0];
+                c += dir[1];
+            }
+        }
+        return false;
+    }
+
+    private static boolean isPiece(Piece piece, Class<? extends Piece> type, PieceColor color) {
+        return piece != null && piece.color == color && type.isInstance(piece);
+    }
+}
@@ -0,0 +1,111 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Micro-benchmarks for move generation, check detection, evaluation and search.
+// Each benchmark runs warm-up iterations, then measured iterations, and reports time per operation,
+// nodes per second and bytes allocated per operation (read from the JVM's per-thread allocation counter).
+// Usage: java Benchmark [name filter]
+public class Benchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = 200_000_000L;
+    private static final String MIDDLEGAME = "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10";
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    private static final String[] PIECE_NAMES = {"pawn", "knight", "bishop", "rook", "queen", "king"};
+
+    private static volatile long sink; // Keeps results alive so the JIT cannot drop the work
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        Map<String, LongSupplier> benchmarks = new LinkedHashMap<>();
+
+        Piece[][] board = Position.fromFen(MIDDLEGAME).toBoard();
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            List<int[]> squares = new ArrayList<>();
+            for (int r = 0; r < 8; r++) {
+                for (int c = 0; c < 8; c++) {
+                    if (board[r][c] != null && Position.typeOf(board[r][c]) == type) squares.add(new int[]{r, c});
+                }
+            }
+            benchmarks.put("movegen.piece." + PIECE_NAMES[type], () -> {
+                long moves = 0;
+                for (int[] sq : squares) {
+                    moves += board[sq[0]][sq[1]].getPossibleMoves(board, sq[0], sq[1], null).size();
+                }
+                return moves;
+            });
+        }
+
+        Position middlegame = Position.fromFen(MIDDLEGAME);
+        int[] moves = new int[Position.MAX_MOVES];
+        benchmarks.put("movegen.position", () -> middlegame.generateMoves(moves));
+        benchmarks.put("check.position", () -> (middlegame.isInCheck(Position.WHITE) ? 1 : 0)
+                + (middlegame.isInCheck(Position.BLACK) ? 1 : 0));
+        benchmarks.put("check.board", () -> (Attacks.isInCheck(board, PieceColor.WHITE) ? 1 : 0)
+                + (Attacks.isInCheck(board, PieceColor.BLACK) ? 1 : 0));
+        benchmarks.put("eval.position", () -> Evaluation.evaluate(middlegame));
+
+        Position kiwipete = Position.fromFen(KIWIPETE);
+        benchmarks.put("perft.kiwipete.3", () -> Perft.perft(kiwipete, 3));
+
+        ChessAI ai = new ChessAI(64);
+        benchmarks.put("search.middlegame.depth4", () -> {
+            ai.getTranspositionTable().clear();
+            ai.findBestMove(Position.fromFen(MIDDLEGAME), 4, Long.MAX_VALUE);
+            return ai.getNodes();
+        });
+
+        System.out.printf("%-28s %14s %14s %16s %12s%n", "benchmark", "ns/op", "ops/sec", "nodes/sec", "B/op");
+        for (Map.Entry<String, LongSupplier> benchmark : benchmarks.entrySet()) {
+            if (benchmark.getKey().contains(filter)) {
+                run(benchmark.getKey(), benchmark.getValue());
+            }
+        }
+    }
+
+    // The supplier returns how many nodes (moves, positions) one operation processed
+    private static void run(String name, LongSupplier operation) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(operation);
+        }
+        long ops = 0;
+        long nodes = 0;
+        long nanos = 0;
+        long bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long[] result = iteration(operation);
+            ops += result[0];
+            nodes += result[1];
+            nanos += result[2];
+            bytes += result[3];
+        }
+        double seconds = nanos / 1e9;
+        System.out.printf("%-28s %14.1f %14.0f %16.0f %12.1f%n", name, (double) nanos / ops, ops / seconds,
+                nodes / seconds, (double) bytes / ops);
+    }
+
+    private static long[] iteration(LongSupplier operation) {
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocatedBytes(threadId);
+        long start = System.nanoTime();
+        long ops = 0;
+        long nodes = 0;
+        long elapsed;
+        do {
+            nodes += operation.getAsLong();
+            ops++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < ITERATION_NANOS);
+        long allocated = allocatedBytes(threadId) - allocatedBefore;
+        sink += nodes;
+        return new long[]{ops, nodes, elapsed, allocated};
+    }
+
+    private static long allocatedBytes(long threadId) {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(threadId);
+    }
+}
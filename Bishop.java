@@ -2,6 +2,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Bishop extends Piece {
+    private static final int[][] DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
     public Bishop(PieceColor color) {
         super(color);
     }
@@ -9,9 +11,8 @@ public class Bishop extends Piece {
     @Override
     public List<Move> getPossibleMoves(Piece[][] board, int row, int col, Move lastMove) {
         List<Move> moves = new ArrayList<>();
-        int[][] directions = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
 
-        for (int[] dir : directions) {
+        for (int[] dir : DIRECTIONS) {
             int r = row + dir[0];
             int c = col + dir[1];
             while (r >= 0 && r < 8 && c >= 0 && c < 8) {
@@ -0,0 +1,197 @@
+import java.util.Random;
+
+public final class Bitboards {
+    static final long[] KNIGHT_ATTACKS = new long[64];
+    static final long[] KING_ATTACKS = new long[64];
+    static final long[][] PAWN_ATTACKS = new long[2][64];
+    // BETWEEN[a][b]: squares strictly between two aligned squares; LINE[a][b]: the whole line through both.
+    // Both are empty when the squares do not share a rank, file or diagonal.
+    static final long[][] BETWEEN = new long[64][64];
+    static final long[][] LINE = new long[64][64];
+
+    private static final long[] ROOK_MASKS = new long[64];
+    private static final long[] ROOK_MAGICS = {
+            0x018000C00420D480L, 0x3040002000100040L, 0x8080200080100009L, 0x0880100108008004L,
+            0x0280080104008042L, 0x2200015004880200L, 0x0480008005001200L, 0x4200005C00810022L,
+            0x1040800040008020L, 0x0001002889004000L, 0x5004802000801000L, 0x5880800800100084L,
+            0x6002808004000800L, 0x000600080A002410L, 0x4002000362000C58L, 0x1042000040840102L,
+            0x2C00208000804000L, 0x0100230040048104L, 0x0000808010002002L, 0x0405420022000990L,
+            0x2504008004080080L, 0x0221010008020400L, 0x48008C0002093008L, 0x2000020002926104L,
+            0x02C0832280004008L, 0x0080810100204000L, 0x1010410100200014L, 0x0220100280080280L,
+            0x0104000808004080L, 0x108C004040020100L, 0x0C01000100020004L, 0x080E004200008104L,
+            0x0202400082800028L, 0x0000201000400040L, 0x0040100182802000L, 0x0800800800801000L,
+            0x2010480025001100L, 0x8000800400800200L, 0x0080081004000201L, 0x0210104402000091L,
+            0x1900802040008000L, 0x4000500020084000L, 0x0010001020008080L, 0x8081009000230008L,
+            0x4400080005010010L, 0x2002001008020004L, 0x8008020004010100L, 0x00090000A0410002L,
+            0x0000800100205100L, 0x0020002040100040L, 0x0041861000200580L, 0x0A10220901100100L,
+            0x1040600A0E002600L, 0x3100041020400801L, 0x1080819008020400L, 0x010005048402C600L,
+            0x0B01002840108005L, 0x0820330440002185L, 0x0006402001900901L, 0x0047020804201001L,
+            0x0005001004020801L, 0x0042000108100402L, 0x0280208802102104L, 0xA040008100402402L
+    };
+    private static final int[] ROOK_SHIFTS = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+    private static final long[] BISHOP_MASKS = new long[64];
+    private static final long[] BISHOP_MAGICS = {
+            0x0008200102160010L, 0x0002040104051025L, 0x8010040040490D04L, 0x0024240082100000L,
+            0x8404042000005000L, 0x0A02015088000010L, 0x28690801100A0000L, 0x4202048048084450L,
+            0x0A10624A04080280L, 0x089420A194010041L, 0x00045004A2084000L, 0x0900442401900591L,
+            0x100004050412A220L, 0xC0C08A0110480004L, 0x0020804410292800L, 0x0C004208410C10E8L,
+            0x020542089888180CL, 0x002C21080D180202L, 0x0182020104010200L, 0x020A000420220000L,
+            0x0205000090401000L, 0x0002006903012102L, 0x1000590202100400L, 0x02A6020426120260L,
+            0x0020080420480110L, 0x0030080302020450L, 0x0206410010011200L, 0x004C040084410200L,
+            0x1001001001004000L, 0x0080410002101200L, 0x0801440001040108L, 0x0004084000210420L,
+            0x024212A184408800L, 0x0C08040402104118L, 0x0020815000491400L, 0x6019010900080040L,
+            0x0018020010040900L, 0x0018034100049000L, 0x8B14041408204141L, 0x0086958090010400L,
+            0x0001041084004002L, 0x0001041120011500L, 0x0882001404000881L, 0x0008084022081021L,
+            0x58002020A0800404L, 0x09C0210040851900L, 0x0210A22801040040L, 0x0021020496006110L,
+            0x080C24041C840100L, 0x0004A20A101C0000L, 0x4100803908080069L, 0x080011002A080200L,
+            0x0000101202020008L, 0x0418042024010C80L, 0x0004206882008010L, 0x4044840084210080L,
+            0x0000420801011004L, 0x8000008208024210L, 0x00104280241A0810L, 0x4020080441048821L,
+            0x0100080808210440L, 0x000010C010011644L, 0x0000108212046400L, 0x011A720801010204L
+    };
+    private static final int[] BISHOP_SHIFTS = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] KNIGHT_DELTAS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+    private static final int[][] KING_DELTAS = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT_ATTACKS[sq] = stepAttacks(sq, KNIGHT_DELTAS);
+            KING_ATTACKS[sq] = stepAttacks(sq, KING_DELTAS);
+            PAWN_ATTACKS[Position.WHITE][sq] = stepAttacks(sq, new int[][]{{1, -1}, {1, 1}});
+            PAWN_ATTACKS[Position.BLACK][sq] = stepAttacks(sq, new int[][]{{-1, -1}, {-1, 1}});
+        }
+        // The magics above are verified while the tables are filled; a rejected one is searched for again
+        Random random = new Random(0x5EED_C0DEL);
+        for (int sq = 0; sq < 64; sq++) {
+            initMagic(sq, ROOK_DIRECTIONS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_TABLE, random);
+            initMagic(sq, BISHOP_DIRECTIONS, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_TABLE, random);
+        }
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                if (a == b) continue;
+                long ends = (1L << a) | (1L << b);
+                if ((rookAttacks(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = rookAttacks(a, 1L << b) & rookAttacks(b, 1L << a);
+                    LINE[a][b] = (rookAttacks(a, 0L) & rookAttacks(b, 0L)) | ends;
+                } else if ((bishopAttacks(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = bishopAttacks(a, 1L << b) & bishopAttacks(b, 1L << a);
+                    LINE[a][b] = (bishopAttacks(a, 0L) & bishopAttacks(b, 0L)) | ends;
+                }
+            }
+        }
+    }
+
+    private Bitboards() {
+    }
+
+    public static long rookAttacks(int sq, long occupied) {
+        return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASKS[sq]) * ROOK_MAGICS[sq]) >>> ROOK_SHIFTS[sq])];
+    }
+
+    public static long bishopAttacks(int sq, long occupied) {
+        return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASKS[sq]) * BISHOP_MAGICS[sq]) >>> BISHOP_SHIFTS[sq])];
+    }
+
+    public static long queenAttacks(int sq, long occupied) {
+        return rookAttacks(sq, occupied) | bishopAttacks(sq, occupied);
+    }
+
+    public static int rank(int sq) {
+        return sq >>> 3;
+    }
+
+    public static int file(int sq) {
+        return sq & 7;
+    }
+
+    private static long stepAttacks(int sq, int[][] deltas) {
+        long attacks = 0L;
+        for (int[] delta : deltas) {
+            int r = rank(sq) + delta[0];
+            int f = file(sq) + delta[1];
+            if (r >= 0 && r < 8 && f >= 0 && f < 8) {
+                attacks |= 1L << (r * 8 + f);
+            }
+        }
+        return attacks;
+    }
+
+    // Ray attacks computed the slow way; only used to fill the magic tables
+    private static long slidingAttacks(int sq, long occupied, int[][] directions) {
+        long attacks = 0L;
+        for (int[] dir : directions) {
+            int r = rank(sq) + dir[0];
+            int f = file(sq) + dir[1];
+            while (r >= 0 && r < 8 && f >= 0 && f < 8) {
+                long bit = 1L << (r * 8 + f);
+                attacks |= bit;
+                if ((occupied & bit) != 0) break;
+                r += dir[0];
+                f += dir[1];
+            }
+        }
+        return attacks;
+    }
+
+    private static long relevantMask(int sq, int[][] directions) {
+        long mask = 0L;
+        for (int[] dir : directions) {
+            int r = rank(sq) + dir[0];
+            int f = file(sq) + dir[1];
+            // The last square of a ray never blocks anything, so it is left out of the index
+            while (r + dir[0] >= 0 && r + dir[0] < 8 && f + dir[1] >= 0 && f + dir[1] < 8) {
+                mask |= 1L << (r * 8 + f);
+                r += dir[0];
+                f += dir[1];
+            }
+        }
+        return mask;
+    }
+
+    private static void initMagic(int sq, int[][] directions, long[] masks, long[] magics, int[] shifts,
+                                  long[][] tables, Random random) {
+        long mask = relevantMask(sq, directions);
+        int bits = Long.bitCount(mask);
+        int size = 1 << bits;
+        long[] occupancies = new long[size];
+        long[] attacks = new long[size];
+        long subset = 0L;
+        for (int i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            attacks[i] = slidingAttacks(sq, subset, directions);
+            subset = (subset - mask) & mask; // Carry-rippler enumeration of all subsets of the mask
+        }
+
+        long[] table = new long[size];
+        int[] epoch = new int[size];
+        int attempt = 0;
+        long magic = magics[sq];
+        while (true) {
+            attempt++;
+            boolean ok = true;
+            for (int i = 0; i < size && ok; i++) {
+                int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    table[index] = attacks[i];
+                } else if (table[index] != attacks[i]) {
+                    ok = false;
+                }
+            }
+            if (ok) {
+                masks[sq] = mask;
+                magics[sq] = magic;
+                shifts[sq] = 64 - bits;
+                tables[sq] = table;
+                return;
+            }
+            do {
+                magic = random.nextLong() & random.nextLong() & random.nextLong();
+            } while (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6);
+        }
+    }
+}
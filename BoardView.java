@@ -0,0 +1,208 @@
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+// The board, painted by one component. Squares are rendered into a back buffer only when something on them
+// changes (the piece, the highlight or the size), and a repaint copies just the changed region from it.
+// Piece glyphs are pre-rendered images for the current square size. A move slides its piece to the target.
+// Squares are numbered row * 8 + col, row 0 being the top of the board as in ChessGame.
+public class BoardView extends JComponent {
+    private static final long serialVersionUID = 1L;
+    private static final Color LIGHT = new Color(245, 245, 220);
+    private static final Color DARK = new Color(139, 69, 19);
+    private static final Color SELECTED = Color.CYAN;
+    private static final Color TARGET = Color.YELLOW;
+    private static final int DEFAULT_SQUARE_SIZE = 60;
+    private static final int CACHED_SIZES = 4; // Square sizes whose glyphs are kept while the window is resized
+    private static final long ANIMATION_NANOS = 150_000_000L;
+    private static final int FRAME_MILLIS = 15;
+
+    public interface SquareListener {
+        void squareClicked(int row, int col);
+    }
+
+    private final Piece[][] board;
+    private final String[] shown = new String[64]; // Glyph in the back buffer on each square, null if empty
+    private long dirty = -1L; // Squares to render again into the back buffer, a bit each
+    private int selected = -1;
+    private long targets;
+    private BufferedImage buffer;
+    private final Map<Integer, Map<String, BufferedImage>> glyphs = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Map<String, BufferedImage>> eldest) {
+            return size() > CACHED_SIZES;
+        }
+    };
+
+    // The animated move: its glyph slides from one square to the other, which is drawn without the piece
+    private final Timer animation = new Timer(FRAME_MILLIS, e -> animationFrame());
+    private String sliding;
+    private int slideFrom = -1;
+    private int slideTo = -1;
+    private long slideStart;
+    private Rectangle slideBounds = new Rectangle(); // Where the glyph is painted now
+
+    public BoardView(Piece[][] board, SquareListener listener) {
+        this.board = board;
+        setOpaque(true);
+        setBackground(DARK.darker());
+        setPreferredSize(new Dimension(8 * DEFAULT_SQUARE_SIZE, 8 * DEFAULT_SQUARE_SIZE));
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int size = squareSize();
+                if (size == 0) return;
+                int row = Math.floorDiv(e.getY() - originY(), size);
+                int col = Math.floorDiv(e.getX() - originX(), size);
+                if (row >= 0 && row < 8 && col >= 0 && col < 8) listener.squareClicked(row, col);
+            }
+        });
+    }
+
+    // Repaints the squares whose piece differs from what is drawn; call after the board changes
+    public void refresh() {
+        for (int square = 0; square < 64; square++) {
+            if (!Objects.equals(glyphAt(square), shown[square])) markDirty(square);
+        }
+    }
+
+    // Highlights the selected square and the squares it can move to (a bit per square), repainting only the
+    // squares whose highlight changes. A row of -1 and no targets clear the highlight.
+    public void setSelection(int row, int col, long targets) {
+        int square = row < 0 ? -1 : row * 8 + col;
+        if (square != selected) {
+            if (selected >= 0) markDirty(selected);
+            if (square >= 0) markDirty(square);
+            selected = square;
+        }
+        for (long changed = this.targets ^ targets; changed != 0; changed &= changed - 1) {
+            markDirty(Long.numberOfTrailingZeros(changed));
+        }
+        this.targets = targets;
+    }
+
+    // Slides the piece on the move's target square in from its start square; call once the move is on the board
+    public void animate(Move move) {
+        finishAnimation();
+        Piece piece = board[move.endRow][move.endCol];
+        if (piece == null) return;
+        sliding = piece.getCharacter();
+        slideFrom = move.startRow * 8 + move.startCol;
+        slideTo = move.endRow * 8 + move.endCol;
+        slideStart = System.nanoTime();
+        slideBounds = squareBounds(slideFrom);
+        refresh();
+        repaint(slideBounds);
+        animation.start();
+    }
+
+    // Moves the glyph to where it should be now, so a late timer event skips ahead instead of slowing down
+    private void animationFrame() {
+        double progress = Math.min(1, (System.nanoTime() - slideStart) / (double) ANIMATION_NANOS);
+        if (progress >= 1) {
+            finishAnimation();
+            return;
+        }
+        double eased = 1 - Math.pow(1 - progress, 3);
+        Rectangle from = squareBounds(slideFrom);
+        Rectangle to = squareBounds(slideTo);
+        Rectangle next = new Rectangle((int) Math.round(from.x + (to.x - from.x) * eased),
+                (int) Math.round(from.y + (to.y - from.y) * eased), from.width, from.height);
+        repaint(slideBounds.union(next));
+        slideBounds = next;
+    }
+
+    private void finishAnimation() {
+        if (sliding == null) return;
+        animation.stop();
+        repaint(slideBounds);
+        int square = slideTo;
+        sliding = null;
+        slideFrom = -1;
+        slideTo = -1;
+        markDirty(square);
+    }
+
+    private String glyphAt(int square) {
+        Piece piece = board[square >> 3][square & 7];
+        return piece != null && square != slideTo ? piece.getCharacter() : null;
+    }
+
+    private void markDirty(int square) {
+        dirty |= 1L << square;
+        repaint(squareBounds(square));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        g.setColor(getBackground());
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+        int size = squareSize();
+        if (size == 0) return;
+        if (buffer == null || buffer.getWidth() != 8 * size) {
+            buffer = new BufferedImage(8 * size, 8 * size, BufferedImage.TYPE_INT_RGB);
+            dirty = -1L;
+            if (sliding != null) slideBounds = squareBounds(slideTo);
+        }
+        if (dirty != 0) renderDirtySquares(size);
+        g.drawImage(buffer, originX(), originY(), null);
+        if (sliding != null) g.drawImage(glyph(sliding, size), slideBounds.x, slideBounds.y, null);
+    }
+
+    private void renderDirtySquares(int size) {
+        Graphics2D g = buffer.createGraphics();
+        for (long squares = dirty; squares != 0; squares &= squares - 1) {
+            int square = Long.numberOfTrailingZeros(squares);
+            int row = square >> 3;
+            int col = square & 7;
+            g.setColor(square == selected ? SELECTED : (targets & (1L << square)) != 0 ? TARGET
+                    : (row + col) % 2 == 0 ? LIGHT : DARK);
+            g.fillRect(col * size, row * size, size, size);
+            shown[square] = glyphAt(square);
+            if (shown[square] != null) g.drawImage(glyph(shown[square], size), col * size, row * size, null);
+        }
+        g.dispose();
+        dirty = 0;
+    }
+
+    // The glyph drawn once onto a transparent square image of the size
+    private BufferedImage glyph(String character, int size) {
+        return glyphs.computeIfAbsent(size, s -> new LinkedHashMap<>()).computeIfAbsent(character, c -> {
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = image.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+            g.setFont(new Font("Serif", Font.PLAIN, size * 2 / 3));
+            g.setColor(Color.BLACK);
+            FontMetrics metrics = g.getFontMetrics();
+            g.drawString(c, (size - metrics.stringWidth(c)) / 2,
+                    (size - metrics.getAscent() - metrics.getDescent()) / 2 + metrics.getAscent());
+            g.dispose();
+            return image;
+        });
+    }
+
+    private int squareSize() {
+        return Math.min(getWidth(), getHeight()) / 8;
+    }
+
+    // The board is centred when the component is not square
+    private int originX() {
+        return (getWidth() - 8 * squareSize()) / 2;
+    }
+
+    private int originY() {
+        return (getHeight() - 8 * squareSize()) / 2;
+    }
+
+    private Rectangle squareBounds(int square) {
+        int size = squareSize();
+        return new Rectangle(originX() + (square & 7) * size, originY() + (square >> 3) * size, size, size);
+    }
+}
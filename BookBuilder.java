@@ -0,0 +1,111 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Builds an OpeningBook file from PGN games. Every move played in the first plies of a game becomes a book
+// entry for the position it was played in, weighted by how often it was played; moves by the side that
+// went on to lose the game are left out.
+// Usage: java BookBuilder [-plies N] <book file> <pgn file>...
+public class BookBuilder {
+    private static final int DEFAULT_PLIES = 20;
+
+    // Polyglot position key -> (Polyglot move -> weight)
+    private final Map<Long, Map<Integer, Integer>> entries = new HashMap<>();
+    private final int maxPlies;
+    private int games;
+    private int skipped;
+
+    public BookBuilder(int maxPlies) {
+        this.maxPlies = maxPlies;
+    }
+
+    public void addGames(Path pgn) throws IOException {
+        try (PgnReader reader = new PgnReader(pgn)) {
+            for (PgnReader.Game game = reader.next(); game != null; game = reader.next()) {
+                addGame(game);
+            }
+        }
+    }
+
+    public void addGame(PgnReader.Game game) {
+        Position position;
+        try {
+            position = game.startPosition();
+        } catch (IllegalArgumentException e) {
+            skipped++;
+            return;
+        }
+        games++;
+        for (int ply = 0; ply < game.moves.size() && ply < maxPlies; ply++) {
+            int move = position.parseSan(game.moves.get(ply));
+            if (move == 0) {
+                skipped++;
+                return; // The rest of the game cannot be followed
+            }
+            int weight = scoreFor(game.result, position.getSideToMove());
+            if (weight > 0) {
+                entries.computeIfAbsent(PolyglotKeys.key(position), k -> new HashMap<>())
+                        .merge(OpeningBook.encode(move), weight, Integer::sum);
+            }
+            position.makeMove(move);
+        }
+    }
+
+    // Polyglot's usual weighting: 2 for a win, 1 for a draw or unknown result, 0 for a loss
+    private static int scoreFor(String result, int color) {
+        switch (result) {
+            case "1-0": return color == Position.WHITE ? 2 : 0;
+            case "0-1": return color == Position.BLACK ? 2 : 0;
+            default: return 1;
+        }
+    }
+
+    public void write(Path book) throws IOException {
+        List<Long> keys = new ArrayList<>(entries.keySet());
+        keys.sort(Long::compareUnsigned);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(book)))) {
+            for (long key : keys) {
+                List<Map.Entry<Integer, Integer>> moves = new ArrayList<>(entries.get(key).entrySet());
+                moves.sort((a, b) -> b.getValue() - a.getValue()); // Best move first, as Polyglot tools expect
+                // Weights are 16 bits, so scale a position's moves down together if the top one does not fit
+                int top = moves.get(0).getValue();
+                for (Map.Entry<Integer, Integer> move : moves) {
+                    int weight = top > 0xFFFF ? (int) ((long) move.getValue() * 0xFFFF / top) : move.getValue();
+                    if (weight == 0) continue;
+                    out.writeLong(key);
+                    out.writeShort(move.getKey());
+                    out.writeShort(weight);
+                    out.writeInt(0); // Learn field
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int plies = DEFAULT_PLIES;
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("-plies")) {
+            plies = Integer.parseInt(args[1]);
+            first = 2;
+        }
+        if (args.length - first < 2) {
+            System.out.println("Usage: java BookBuilder [-plies N] <book file> <pgn file>...");
+            System.exit(1);
+        }
+        BookBuilder builder = new BookBuilder(plies);
+        for (int i = first + 1; i < args.length; i++) {
+            builder.addGames(Paths.get(args[i]));
+        }
+        Path book = Paths.get(args[first]);
+        builder.write(book);
+        System.out.printf("%d games, %d skipped, %d positions, %d entries written to %s%n", builder.games,
+                builder.skipped, builder.entries.size(), Files.size(book) / OpeningBook.ENTRY_SIZE, book);
+    }
+}
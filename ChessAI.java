@@ -1,229 +1,465 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ChessAI {
+    // Logs a line of SearchStatistics for every search at FINE, e.g. with ChessAI.level = FINE and a handler
+    // at FINE in the logging.properties given by -Djava.util.logging.config.file
+    private static final Logger LOG = Logger.getLogger(ChessAI.class.getName());
     private static final int DEPTH = 3; // Depth for Minimax search
-    private static final int CHECKMATE_SCORE = 1000000;
-    private static final int STALEMATE_SCORE = 0;
+    private static final int MAX_DEPTH = 64;
+    private static final int DEFAULT_HASH_MB = 16;
+    private static final long NO_TIME_LIMIT = Long.MAX_VALUE;
     private static final Random random = new Random();
 
-    public Move getBestMove(Piece[][] board, PieceColor aiColor) {
-        PieceColor opponentColor = aiColor == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
-        List<Move> allMoves = getAllPossibleMoves(board, aiColor);
-        if (allMoves.isEmpty()) return null;
-
-        int bestScore = Integer.MIN_VALUE;
-        Move bestMove = allMoves.get(0);
-        for (Move move : allMoves) {
-            Piece[][] tempBoard = cloneBoard(board);
-            applyMove(tempBoard, move);
-            int score = minimax(tempBoard, DEPTH - 1, false, aiColor, opponentColor, Integer.MIN_VALUE, Integer.MAX_VALUE);
-            if (score > bestScore) {
-                bestScore = score;
-                bestMove = move;
-            }
+    private final TranspositionTable table;
+    private int threads = 1;
+    private boolean deterministic;
+    private ExecutorService helpers;
+    private ExecutorService searchThread; // Runs background searches started with startSearch
+    private Ponder ponder; // The running ponder search, if any
+    private OpeningBook book;
+    private Tablebases tablebases;
+    private long nodeLimit = Long.MAX_VALUE;
+    private MoveOrdering[] orderings = {new MoveOrdering()}; // One per thread, kept between searches
+    // The last search whose move was used, written by the thread that ran it and read from any thread
+    private volatile SearchStatistics statistics;
+
+    public ChessAI() {
+        this(DEFAULT_HASH_MB);
+    }
+
+    public ChessAI(int hashMegabytes) {
+        table = new TranspositionTable(hashMegabytes);
+    }
+
+    public TranspositionTable getTranspositionTable() {
+        return table;
+    }
+
+    public void setHashSize(int megabytes) {
+        table.resize(megabytes);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // Number of threads searching each move, including the calling thread
+    public void setThreads(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be at least 1");
+        if (threads == this.threads) return;
+        shutdown();
+        this.threads = threads;
+        orderings = Arrays.copyOf(orderings, threads);
+        for (int i = 0; i < threads; i++) {
+            if (orderings[i] == null) orderings[i] = new MoveOrdering();
         }
-        return bestMove;
     }
 
-    private int evaluateBoard(Piece[][] board, PieceColor aiColor) {
-        int score = 0;
-        PieceColor opponentColor = aiColor == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
-
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null) {
-                    int value = getPieceValue(board[r][c]);
-                    if (board[r][c].color == aiColor) {
-                        score += value;
-                    } else {
-                        score -= value;
-                    }
-                }
-            }
+    // In deterministic mode every root move gets an exact score and the table is only used for move
+    // ordering, so a fixed-depth search picks the same move whatever the thread count
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    // Positions found in the book are answered from it without searching; null turns the book off
+    public void setOpeningBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    // Endgames covered by the tables are scored from them instead of searched; null turns them off
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    // Nodes each search thread may search per move; Long.MAX_VALUE for no limit
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    // Forgets what earlier searches learned, for a new game against a different opponent
+    public void newGame() {
+        stopPondering();
+        table.clear();
+        for (MoveOrdering ordering : orderings) {
+            ordering.clear();
         }
+    }
+
+    // Nodes searched by all threads during the last search; cancelled searches and ponder misses do not count
+    public long getNodes() {
+        SearchStatistics last = statistics;
+        return last == null ? 0 : last.getNodes();
+    }
+
+    // Counters and timings of the last search, null before the first one; as for getNodes, only searches
+    // whose move was used count
+    public SearchStatistics getStatistics() {
+        return statistics;
+    }
+
+    public void shutdown() {
+        stopPondering();
+        if (helpers != null) {
+            helpers.shutdownNow();
+            helpers = null;
+        }
+        if (searchThread != null) {
+            searchThread.shutdownNow();
+            searchThread = null;
+        }
+    }
+
+    public Move getBestMove(Piece[][] board, PieceColor aiColor) {
+        return getBestMove(board, aiColor, null);
+    }
+
+    public Move getBestMove(Piece[][] board, PieceColor aiColor, Move lastMove) {
+        Position position = Position.fromBoard(board, aiColor, lastMove);
+        int bookMove = bookMove(position);
+        return toMove(position, bookMove != 0 ? bookMove : findBestMove(position, DEPTH, NO_TIME_LIMIT));
+    }
+
+    // Searches depth 1, 2, 3... until the budget runs out and returns the best move of the last completed depth
+    public Move getBestMove(Piece[][] board, PieceColor aiColor, Move lastMove, long timeBudgetMillis) {
+        Position position = Position.fromBoard(board, aiColor, lastMove);
+        int bookMove = bookMove(position);
+        return toMove(position, bookMove != 0 ? bookMove : findBestMove(position, MAX_DEPTH, timeBudgetMillis));
+    }
 
-        // Add positional bonuses (simple example)
-        if (aiColor == PieceColor.WHITE) {
-            score += countMaterial(board, PieceColor.WHITE) - countMaterial(board, PieceColor.BLACK);
-        } else {
-            score += countMaterial(board, PieceColor.BLACK) - countMaterial(board, PieceColor.WHITE);
+    // Starts a timed search on the AI's own thread and returns at once. The position is read from the board
+    // before returning, so the caller may change the board while the search runs. Cancelling the future stops
+    // the search at its next clock check; a cancelled future never completes with a move.
+    // If a ponder search was started on exactly this position, it is kept and given the time budget instead.
+    public CompletableFuture<Move> startSearch(Piece[][] board, PieceColor aiColor, Move lastMove,
+                                               long timeBudgetMillis, SearchListener listener) {
+        return startSearch(Position.fromBoard(board, aiColor, lastMove), timeBudgetMillis, listener);
+    }
+
+    // Same, for a position that carries the moves of the game, so the search sees repetitions of earlier
+    // positions. The search works on a copy.
+    public CompletableFuture<Move> startSearch(Position root, long timeBudgetMillis, SearchListener listener) {
+        Position position = new Position(root);
+        int bookMove = bookMove(position);
+        if (bookMove != 0) {
+            stopPondering();
+            return CompletableFuture.completedFuture(toMove(position, bookMove));
+        }
+        if (ponder != null && ponder.key == position.getKey()) {
+            Ponder hit = ponder;
+            ponder = null;
+            hit.listener.set(listener);
+            hit.deadline.set(deadlineFor(timeBudgetMillis)); // The clock starts now; pondering was free
+            hit.hit();
+            return hit.result;
         }
+        stopPondering();
+        return submit(position, new AtomicLong(deadlineFor(timeBudgetMillis)), listener, this::record);
+    }
 
-        return score;
+    // Called after the AI has moved, with the opponent to move. Guesses the opponent's reply from the
+    // principal variation and searches the position after it, without a time limit, until startSearch
+    // reaches the same position (a ponder hit) or something else (a miss, which stops the ponder search).
+    // Either way the table keeps what the ponder search found.
+    public void startPondering(Piece[][] board, PieceColor opponentColor, Move lastMove) {
+        startPondering(Position.fromBoard(board, opponentColor, lastMove));
     }
 
-    private int getPieceValue(Piece piece) {
-        if (piece instanceof Pawn) return 1;
-        if (piece instanceof Knight || piece instanceof Bishop) return 3;
-        if (piece instanceof Rook) return 5;
-        if (piece instanceof Queen) return 9;
-        if (piece instanceof King) return 1000; // King is critical, but can't be captured
+    // Same, for a position that carries the moves of the game; the ponder search works on a copy
+    public void startPondering(Position root) {
+        stopPondering();
+        Position position = new Position(root);
+        int reply = predictedReply(position);
+        if (reply == 0) return;
+        position.makeMove(reply);
+        Ponder started = new Ponder(position.getKey(), new AtomicLong(Long.MAX_VALUE));
+        started.result = submit(position, started.deadline, (depth, score, nodes) -> {
+            SearchListener current = started.listener.get();
+            if (current != null) current.depthCompleted(depth, score, nodes);
+        }, started::finished);
+        ponder = started;
+    }
+
+    public void stopPondering() {
+        if (ponder != null) {
+            ponder.result.cancel(true);
+            ponder = null;
+        }
+    }
+
+    public boolean isPondering() {
+        return ponder != null;
+    }
+
+    // A move from the opening book, or 0 when there is no book or the position is not in it
+    public int bookMove(Position position) {
+        return book != null ? book.probe(position) : 0;
+    }
+
+    // The table move of the position, which the last search left there as the second move of its
+    // principal variation; 0 if there is none or it is not legal here
+    private int predictedReply(Position position) {
+        int move = TranspositionTable.move(table.probe(position.getKey()));
+        if (move == 0) return 0;
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (moves[i] == move) return move;
+        }
         return 0;
     }
 
-    private int countMaterial(Piece[][] board, PieceColor color) {
-        int material = 0;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == color) {
-                    material += getPieceValue(board[r][c]);
-                }
+    // The search's statistics go to finished unless the future was cancelled, before the future completes
+    private CompletableFuture<Move> submit(Position position, AtomicLong deadline, SearchListener listener,
+                                           Consumer<SearchStatistics> finished) {
+        AtomicBoolean stop = new AtomicBoolean();
+        CompletableFuture<Move> result = new CompletableFuture<>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                stop.set(true);
+                return super.cancel(mayInterruptIfRunning);
             }
+        };
+        if (searchThread == null) {
+            searchThread = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "chess-ai-search");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return material;
+        searchThread.execute(() -> {
+            if (result.isDone()) return; // Cancelled before it started
+            try {
+                SearchStatistics searched = search(position, MAX_DEPTH, deadline, stop, listener);
+                if (!result.isCancelled()) finished.accept(searched);
+                result.complete(toMove(position, searched.getBestMove()));
+            } catch (RuntimeException | Error e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
     }
 
-    private List<Move> getAllPossibleMoves(Piece[][] board, PieceColor color) {
-        List<Move> moves = new ArrayList<>();
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == color) {
-                    moves.addAll(board[r][c].getPossibleMoves(board, r, c, null));
-                }
-            }
+    private static long deadlineFor(long timeBudgetMillis) {
+        return timeBudgetMillis == NO_TIME_LIMIT ? Long.MAX_VALUE
+                : System.nanoTime() + Math.max(1, timeBudgetMillis) * 1_000_000L;
+    }
+
+    private static Move toMove(Position position, int move) {
+        return move == 0 ? null : position.toMove(move);
+    }
+
+    // Returns the packed best move, or 0 if the side to move has no legal move
+    public int findBestMove(Position root, int maxDepth, long timeBudgetMillis) {
+        return findBestMove(root, maxDepth, new AtomicLong(deadlineFor(timeBudgetMillis)), new AtomicBoolean(), null);
+    }
+
+    // Setting stop from another thread ends the search early with the best move found so far; the deadline
+    // (a System.nanoTime() value) may also be moved while the search runs
+    int findBestMove(Position root, int maxDepth, AtomicLong deadline, AtomicBoolean stop,
+                     SearchListener listener) {
+        SearchStatistics searched = search(root, maxDepth, deadline, stop, listener);
+        record(searched);
+        return searched.getBestMove();
+    }
+
+    private SearchStatistics search(Position root, int maxDepth, AtomicLong deadline, AtomicBoolean stop,
+                                    SearchListener listener) {
+        maxDepth = Math.min(maxDepth, Search.MAX_PLY); // The search line ends there whatever the depth
+        List<Search> searches = new ArrayList<>();
+        long[] iterationNanos = new long[Search.MAX_PLY + 1];
+        long start = System.nanoTime();
+        table.newSearch();
+        for (MoveOrdering ordering : orderings) {
+            ordering.newSearch();
+        }
+        int bestMove;
+        try {
+            bestMove = deterministic ? splitRoot(root, maxDepth, deadline, stop, listener, searches, iterationNanos)
+                    : lazySmp(root, maxDepth, deadline, stop, listener, searches, iterationNanos);
+        } finally {
+            stop.set(true);
         }
-        return moves;
+        SearchStatistics searched = new SearchStatistics(searches, threads, bestMove, System.nanoTime() - start,
+                iterationNanos);
+        table.addStatistics(searched.getProbes(), searched.getHits());
+        return searched;
+    }
+
+    // Publishes a search whose move is used: getStatistics, getNodes, SearchMetrics and the log
+    private void record(SearchStatistics searched) {
+        statistics = searched;
+        SearchMetrics.getInstance().record(searched);
+        if (LOG.isLoggable(Level.FINE)) LOG.fine("search " + searched);
     }
 
-    private int minimax(Piece[][] board, int depth, boolean isMaximizing, PieceColor aiColor, PieceColor opponentColor,
-                        int alpha, int beta) {
-        if (depth == 0 || isGameOver(board, aiColor)) {
-            return evaluateBoard(board, aiColor);
+    // Lazy SMP: helpers search the same root on their own Position and share results through the table.
+    // Only the calling thread's answer is used, and its iterations are the ones timed.
+    private int lazySmp(Position root, int maxDepth, AtomicLong deadline, AtomicBoolean stop, SearchListener listener,
+                        List<Search> searches, long[] iterationNanos) {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < threads; i++) {
+            Search helper = newSearch(root, i, stop, deadline, false, true);
+            searches.add(helper);
+            int startDepth = 1 + (i & 1); // Odd helpers start one ply deeper so threads spread over depths
+            futures.add(helperPool().submit(() -> helper.iterate(startDepth, maxDepth)));
         }
+        Search main = newSearch(root, 0, stop, deadline, true, true);
+        searches.add(main);
+        if (listener != null) {
+            // Helper counters are read while they run, which is close enough for a progress report
+            main.setListener((depth, score, mainNodes) -> listener.depthCompleted(depth, score, totalNodes(searches)));
+        }
+        int bestMove = main.iterate(1, maxDepth);
+        stop.set(true);
+        awaitAll(futures);
+        System.arraycopy(main.getIterationNanos(), 0, iterationNanos, 0, iterationNanos.length);
+        return bestMove;
+    }
+
+    private Search newSearch(Position root, int thread, AtomicBoolean stop, AtomicLong deadline, boolean mainThread,
+                             boolean tableCutoffs) {
+        Search search = new Search(table, new Position(root), orderings[thread], stop, deadline, mainThread,
+                tableCutoffs);
+        search.setTablebases(tablebases);
+        search.setNodeLimit(nodeLimit);
+        return search;
+    }
+
+    // Root splitting: threads take root moves from a shared counter and score each one exactly
+    private int splitRoot(Position root, int maxDepth, AtomicLong deadline, AtomicBoolean stop, SearchListener listener,
+                          List<Search> searches, long[] iterationNanos) {
+        int[] generated = new int[Position.MAX_MOVES];
+        int legalCount = root.generateMoves(generated);
+        if (legalCount == 0) return 0;
 
-        if (isMaximizing) {
-            int maxEval = Integer.MIN_VALUE;
-            List<Move> moves = getAllPossibleMoves(board, aiColor);
-            for (Move move : moves) {
-                Piece[][] tempBoard = cloneBoard(board);
-                applyMove(tempBoard, move);
-                int eval = minimax(tempBoard, depth - 1, false, aiColor, opponentColor, alpha, beta);
-                maxEval = Math.max(maxEval, eval);
-                alpha = Math.max(alpha, eval);
-                if (beta <= alpha) break; // Beta cutoff
+        int[] moves = Arrays.copyOf(generated, legalCount);
+        int[] scores = new int[moves.length];
+        int bestMove = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            orderRootMoves(root, moves, bestMove);
+            AtomicInteger next = new AtomicInteger();
+            List<Search> workers = new ArrayList<>();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                workers.add(newSearch(root, t, stop, deadline, true, false));
             }
-            return maxEval;
-        } else {
-            int minEval = Integer.MAX_VALUE;
-            List<Move> moves = getAllPossibleMoves(board, opponentColor);
-            for (Move move : moves) {
-                Piece[][] tempBoard = cloneBoard(board);
-                applyMove(tempBoard, move);
-                int eval = minimax(tempBoard, depth - 1, true, aiColor, opponentColor, alpha, beta);
-                minEval = Math.min(minEval, eval);
-                beta = Math.min(beta, eval);
-                if (beta <= alpha) break; // Alpha cutoff
+            for (int t = 1; t < threads; t++) {
+                Search worker = workers.get(t);
+                int iterationDepth = depth;
+                futures.add(helperPool().submit(() -> scoreRootMoves(worker, moves, scores, next, iterationDepth)));
             }
-            return minEval;
+            scoreRootMoves(workers.get(0), moves, scores, next, depth);
+            awaitAll(futures);
+            searches.addAll(workers);
+            if (workers.stream().anyMatch(Search::isStopped)) break; // The unfinished iteration is thrown away
+
+            int best = 0;
+            for (int i = 1; i < moves.length; i++) {
+                if (scores[i] > scores[best]) best = i; // Ties go to the move tried first, as in a sequential search
+            }
+            bestMove = moves[best];
+            table.store(root.getKey(), bestMove, depth, TranspositionTable.EXACT, scores[best]);
+            iterationNanos[depth] = System.nanoTime() - start;
+            if (listener != null) listener.depthCompleted(depth, scores[best], totalNodes(searches));
+            if (System.nanoTime() >= deadline.get() || stop.get()) break;
+            if (Math.abs(scores[best]) > Search.CHECKMATE_SCORE - Search.MAX_PLY) break;
         }
+        return bestMove;
     }
 
-    private boolean isGameOver(Piece[][] board, PieceColor aiColor) {
-        return !hasLegalMoves(board, aiColor);
+    // Puts the root moves in the order the sequential search tries them: the previous depth's best move first
+    // (its table move), then captures by MVV-LVA and the quiet moves. History scores are left out because they
+    // depend on which thread searched what, so ties are broken the same way for every thread count.
+    private static void orderRootMoves(Position root, int[] moves, int previousBest) {
+        MovePicker picker = new MovePicker();
+        picker.init(root, new MoveOrdering(), previousBest, 0);
+        int count = 0;
+        for (int move = picker.next(); move != 0; move = picker.next()) {
+            moves[count++] = move;
+        }
     }
 
-    private boolean hasLegalMoves(Piece[][] board, PieceColor color) {
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == color) {
-                    List<Move> moves = board[r][c].getPossibleMoves(board, r, c, null);
-                    for (Move move : moves) {
-                        Piece[][] tempBoard = cloneBoard(board);
-                        applyMove(tempBoard, move);
-                        if (!isInCheck(tempBoard, color)) {
-                            return true;
-                        }
-                    }
-                }
-            }
+    private static void scoreRootMoves(Search worker, int[] moves, int[] scores, AtomicInteger next, int depth) {
+        for (int i = next.getAndIncrement(); i < moves.length && !worker.isStopped(); i = next.getAndIncrement()) {
+            scores[i] = worker.scoreRootMove(moves[i], depth);
         }
-        return false;
     }
 
-    private boolean isInCheck(Piece[][] board, PieceColor color) {
-        int kingRow = -1, kingCol = -1;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] instanceof King && board[r][c].color == color) {
-                    kingRow = r;
-                    kingCol = c;
-                    break;
-                }
-            }
+    private static long totalNodes(List<Search> searches) {
+        long total = 0;
+        for (Search search : searches) {
+            total += search.getNodes();
         }
-        PieceColor opponent = color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == opponent) {
-                    if (!(board[r][c] instanceof King)) {
-                        List<Move> moves = board[r][c].getPossibleMoves(board, r, c, null);
-                        for (Move m : moves) {
-                            if (m.endRow == kingRow && m.endCol == kingCol) {
-                                return true;
-                            }
-                        }
-                    } else {
-                        int[][] kingDeltas = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
-                        for (int[] delta : kingDeltas) {
-                            int kr = r + delta[0];
-                            int kc = c + delta[1];
-                            if (kr >= 0 && kr < 8 && kc >= 0 && kc < 8 && kr == kingRow && kc == kingCol) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
+        return total;
+    }
+
+    private ExecutorService helperPool() {
+        if (helpers == null) {
+            AtomicInteger id = new AtomicInteger();
+            helpers = Executors.newFixedThreadPool(threads - 1, runnable -> {
+                Thread thread = new Thread(runnable, "chess-ai-helper-" + id.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return false;
-    }
-
-    private Piece[][] cloneBoard(Piece[][] original) {
-        Piece[][] copy = new Piece[8][8];
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (original[i][j] != null) {
-                    if (original[i][j] instanceof Pawn) {
-                        copy[i][j] = new Pawn(original[i][j].color);
-                    } else if (original[i][j] instanceof Rook) {
-                        copy[i][j] = new Rook(original[i][j].color);
-                    } else if (original[i][j] instanceof Knight) {
-                        copy[i][j] = new Knight(original[i][j].color);
-                    } else if (original[i][j] instanceof Bishop) {
-                        copy[i][j] = new Bishop(original[i][j].color);
-                    } else if (original[i][j] instanceof Queen) {
-                        copy[i][j] = new Queen(original[i][j].color);
-                    } else if (original[i][j] instanceof King) {
-                        copy[i][j] = new King(original[i][j].color);
-                    }
-                    copy[i][j].setHasMoved(original[i][j].hasMoved());
-                }
+        return helpers;
+    }
+
+    private static void awaitAll(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search thread failed", e.getCause());
             }
         }
-        return copy;
     }
 
-    private void applyMove(Piece[][] board, Move move) {
-        Piece piece = board[move.startRow][move.startCol];
-        piece.setHasMoved(true);
+    // A ponder search is recorded only once it is a hit, whether it ends before the hit or after it;
+    // a miss is cancelled and never recorded
+    private final class Ponder {
+        final long key; // Position the ponder search is running on
+        final AtomicLong deadline;
+        final AtomicReference<SearchListener> listener = new AtomicReference<>(); // Set on a hit
+        CompletableFuture<Move> result;
+        private boolean hit; // Guarded by this
+        private SearchStatistics searched; // A search that ended before the hit, guarded by this
 
-        if (piece instanceof King && Math.abs(move.endCol - move.startCol) == 2) {
-            int rookCol = move.endCol > move.startCol ? 7 : 0;
-            int rookNewCol = move.endCol > move.startCol ? 5 : 3;
-            board[move.startRow][rookNewCol] = board[move.startRow][rookCol];
-            board[move.startRow][rookNewCol].setHasMoved(true);
-            board[move.startRow][rookCol] = null;
-        } else if (piece instanceof Pawn && move.endCol != move.startCol && board[move.endRow][move.endCol] == null) {
-            board[move.startRow][move.endCol] = null;
-        } else if (piece instanceof Pawn && (move.endRow == 0 || move.endRow == 7)) {
-            String[] options = {"Queen", "Rook", "Bishop", "Knight"};
-            // Simulate promotion (in real game, this would be handled by GUI)
-            piece = new Queen(piece.color); // Default to Queen for AI simplicity
+        Ponder(long key, AtomicLong deadline) {
+            this.key = key;
+            this.deadline = deadline;
         }
 
-        board[move.endRow][move.endCol] = piece;
-        board[move.startRow][move.startCol] = null;
+        synchronized void finished(SearchStatistics statistics) {
+            if (hit) {
+                record(statistics);
+            } else {
+                searched = statistics;
+            }
+        }
+
+        synchronized void hit() {
+            hit = true;
+            if (searched != null) record(searched);
+        }
     }
 }
@@ -0,0 +1,182 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// A chess clock for two sides (Position.WHITE and BLACK) under a TimeControl. Time is measured with
+// System.nanoTime when a side moves, never by counting ticks, so it cannot drift and a flag is decided by
+// the exact time used. Every clock shares one daemon scheduler thread, which wakes only when a running side
+// would run out of time, so hosting many games costs no thread per clock.
+// The state is an immutable snapshot replaced on every change: getRemainingTime can be called from any thread
+// (the search, for example) without locking. Flag events are passed to the listener through the executor
+// given, e.g. SwingUtilities::invokeLater to receive them on the event thread.
+public class ChessClock {
+    private static final ScheduledThreadPoolExecutor SCHEDULER = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "chess-clock");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        SCHEDULER.setRemoveOnCancelPolicy(true); // A move cancels its flag check; do not keep it queued
+    }
+
+    public interface Listener {
+        void flagged(int color); // The side ran out of time
+    }
+
+    private final TimeControl control;
+    private final Executor events;
+    private final Listener listener;
+    private volatile State state;
+    private ScheduledFuture<?> flagCheck; // Guarded by this
+
+    // Per side: nanoseconds left when the running side's move started, the period and the moves still to play
+    // in it (0 for the rest of the game). The arrays are never changed once the state is published.
+    private static final class State {
+        final long[] remaining;
+        final int[] period;
+        final int[] movesLeft;
+        final int running; // Side whose time runs, or -1 when the clock is stopped
+        final long since; // When the running side's move started
+        final int flagged; // Side that ran out of time, or -1
+
+        State(long[] remaining, int[] period, int[] movesLeft, int running, long since, int flagged) {
+            this.remaining = remaining;
+            this.period = period;
+            this.movesLeft = movesLeft;
+            this.running = running;
+            this.since = since;
+            this.flagged = flagged;
+        }
+    }
+
+    public ChessClock(TimeControl control, Executor events, Listener listener) {
+        this.control = control;
+        this.events = events;
+        this.listener = listener;
+        reset();
+    }
+
+    public TimeControl getTimeControl() {
+        return control;
+    }
+
+    // Back to the start of the first period for both sides, stopped
+    public synchronized void reset() {
+        TimeControl.Period first = control.period(0);
+        long time = TimeUnit.MILLISECONDS.toNanos(first.time);
+        publish(new State(new long[] {time, time}, new int[2], new int[] {first.moves, first.moves}, -1, 0, -1));
+    }
+
+    // Starts the side's time, e.g. for the first move of the game or after stop
+    public synchronized void start(int color) {
+        State current = state;
+        if (current.flagged >= 0) return;
+        long now = System.nanoTime();
+        long[] remaining = current.remaining.clone();
+        if (current.running >= 0) remaining[current.running] = remainingNanos(current, current.running, now);
+        publish(new State(remaining, current.period, current.movesLeft, color, now, -1));
+    }
+
+    // Stops the clock, keeping the time used on the current move
+    public synchronized void stop() {
+        State current = state;
+        if (current.running < 0) return;
+        long[] remaining = current.remaining.clone();
+        remaining[current.running] = remainingNanos(current, current.running, System.nanoTime());
+        publish(new State(remaining, current.period, current.movesLeft, -1, 0, current.flagged));
+    }
+
+    // The running side completed a move: its time is charged, it gets the increment and perhaps the next
+    // period's time, and the other side's time starts. A side that moved too late has lost on time.
+    public synchronized void press() {
+        State current = state;
+        if (current.running < 0 || current.flagged >= 0) return;
+        long now = System.nanoTime();
+        int color = current.running;
+        long left = remainingNanos(current, color, now);
+        if (left <= 0) {
+            flag(current, color);
+            return;
+        }
+        long[] remaining = current.remaining.clone();
+        int[] period = current.period.clone();
+        int[] movesLeft = current.movesLeft.clone();
+        TimeControl.Period played = control.period(period[color]);
+        remaining[color] = left + TimeUnit.MILLISECONDS.toNanos(played.increment);
+        if (movesLeft[color] > 0 && --movesLeft[color] == 0) {
+            TimeControl.Period next = control.period(++period[color]);
+            remaining[color] += TimeUnit.MILLISECONDS.toNanos(next.time);
+            movesLeft[color] = next.moves;
+        }
+        publish(new State(remaining, period, movesLeft, color ^ 1, now, -1));
+    }
+
+    // Milliseconds the side has left, as of now; lock-free
+    public long getRemainingTime(int color) {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, remainingNanos(state, color, System.nanoTime())));
+    }
+
+    // Milliseconds added after each move of the side's current period
+    public long getIncrement(int color) {
+        return control.period(state.period[color]).increment;
+    }
+
+    // Milliseconds at the start of each move that do not count against the side
+    public long getDelay(int color) {
+        return control.period(state.period[color]).delay;
+    }
+
+    // Moves the side must still make in its current period, or 0 if the period lasts the rest of the game
+    public int getMovesToGo(int color) {
+        return state.movesLeft[color];
+    }
+
+    // The side whose time runs, or -1 if the clock is stopped
+    public int getRunning() {
+        return state.running;
+    }
+
+    // The side that ran out of time, or -1
+    public int getFlagged() {
+        return state.flagged;
+    }
+
+    private long remainingNanos(State current, int color, long now) {
+        if (color != current.running) return current.remaining[color];
+        return current.remaining[color] - Math.max(0, now - current.since - delayNanos(current, color));
+    }
+
+    private long delayNanos(State current, int color) {
+        return TimeUnit.MILLISECONDS.toNanos(control.period(current.period[color]).delay);
+    }
+
+    private void publish(State next) {
+        state = next;
+        if (flagCheck != null) flagCheck.cancel(false);
+        flagCheck = null;
+        if (next.running >= 0) {
+            // Wake exactly when the running side's time would be gone
+            long outOfTime = next.since + delayNanos(next, next.running) + next.remaining[next.running];
+            flagCheck = SCHEDULER.schedule(() -> checkFlag(next), Math.max(0, outOfTime - System.nanoTime()),
+                    TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized void checkFlag(State checked) {
+        if (state != checked) return; // A move was made in time
+        if (remainingNanos(checked, checked.running, System.nanoTime()) > 0) {
+            publish(checked); // Woken early; wait again
+        } else {
+            flag(checked, checked.running);
+        }
+    }
+
+    private void flag(State current, int color) {
+        long[] remaining = current.remaining.clone();
+        remaining[color] = 0;
+        publish(new State(remaining, current.period, current.movesLeft, -1, 0, color));
+        events.execute(() -> listener.flagged(color));
+    }
+}
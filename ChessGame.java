@@ -1,28 +1,57 @@
 import javax.swing.*;
 import java.awt.*;
+import java.awt.datatransfer.StringSelection;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 public class ChessGame extends JFrame {
+    // Pause before the AI starts thinking, in milliseconds; set with -Dchess.aiMoveDelay=...
+    private static final int AI_MOVE_DELAY = Integer.getInteger("chess.aiMoveDelay", 0);
+    // Opening book used by the AI if the file exists; set with -Dchess.book=...
+    private static final String BOOK_FILE = System.getProperty("chess.book", "book.bin");
+    // Endgame tables used by the AI if the directory exists; set with -Dchess.tablebases=...
+    private static final String TABLEBASE_DIR = System.getProperty("chess.tablebases", "tablebases");
+
     private Piece[][] board = new Piece[8][8];
     private PieceColor currentPlayer = PieceColor.WHITE;
     private JLabel statusLabel;
-    private JPanel chessBoardPanel;
+    private BoardView boardView;
     private int selectedRow = -1;
     private int selectedCol = -1;
     private List<Move> possibleMoves = new ArrayList<>();
     private Move lastMove;
     private boolean isAI = true; // Default to AI mode (AI plays as Black)
     private boolean isAIPhase = true; // Track if AI should act in current phase
+    private boolean isPonder = true; // Let the AI think on the player's time
     private ChessAI ai = new ChessAI();
+    private TimeManager timeManager = new TimeManager();
     private GameHistory history;
+    private String startFen = Position.START_FEN; // Where the history starts, for FEN and PGN export
+    // The game as a Position, moved along with the history, so its key stack serves the draw checks and the
+    // searches (which copy it) without replaying the game
+    private Position position = Position.fromFen(Position.START_FEN);
     private ChessTimer timer;
+    private Timer aiDelayTimer;
+    private CompletableFuture<Move> aiSearch;
+    private int aiSearchId; // Bumped on cancel so updates already queued by an old search are ignored
 
     public ChessGame() {
         initializeBoard();
-        history = new GameHistory(board);
+        history = new GameHistory();
         timer = new ChessTimer(this);
+        loadOpeningBook();
+        loadTablebases();
         setupGUI();
     }
 
@@ -49,36 +78,41 @@ public class ChessGame extends JFrame {
         board[7][4] = new King(PieceColor.WHITE);
     }
 
+    private void loadOpeningBook() {
+        Path book = Paths.get(BOOK_FILE);
+        if (!Files.exists(book)) return;
+        try {
+            ai.setOpeningBook(new OpeningBook(book));
+        } catch (IOException e) {
+            System.err.println("Could not open the opening book " + book + ": " + e.getMessage());
+        }
+    }
+
+    private void loadTablebases() {
+        Path directory = Paths.get(TABLEBASE_DIR);
+        if (!Files.isDirectory(directory)) return;
+        try {
+            ai.setTablebases(new Tablebases(directory));
+        } catch (IOException e) {
+            System.err.println("Could not open the tablebases in " + directory + ": " + e.getMessage());
+        }
+    }
+
     private void setupGUI() {
         setTitle("Chess Game");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-        chessBoardPanel = new JPanel(new GridLayout(8, 8));
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                JLabel label = new JLabel();
-                label.setOpaque(true);
-                label.setBackground((row + col) % 2 == 0 ? new Color(245, 245, 220) : new Color(139, 69, 19));
-                if (board[row][col] != null) {
-                    label.setText(board[row][col].getCharacter());
-                }
-                label.setHorizontalAlignment(SwingConstants.CENTER);
-                label.setFont(new Font("Serif", Font.PLAIN, 40));
-                final int r = row;
-                final int c = col;
-                label.addMouseListener(new MouseAdapter() {
-                    @Override
-                    public void mouseClicked(MouseEvent e) {
-                        handleClick(r, c);
-                    }
-                });
-                chessBoardPanel.add(label);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                stopGame();
             }
-        }
-        add(chessBoardPanel, BorderLayout.CENTER);
+        });
+        boardView = new BoardView(board, this::handleClick);
+        add(boardView, BorderLayout.CENTER);
         statusLabel = new JLabel("White's turn");
         add(statusLabel, BorderLayout.SOUTH);
 
-        // Add menu bar for mode toggle, Undo/Redo, and Timer reset
+        // Add menu bar for FEN/PGN files, mode toggle, Undo/Redo, Timer reset and time control
         JMenuBar menuBar = new JMenuBar();
         JMenu gameMenu = new JMenu("Game");
         JCheckBoxMenuItem aiModeItem = new JCheckBoxMenuItem("AI Mode (vs. AI)", true);
@@ -86,33 +120,80 @@ public class ChessGame extends JFrame {
             isAI = aiModeItem.isSelected();
             isAIPhase = isAI && currentPlayer == PieceColor.BLACK; // Reset AI phase based on mode and turn
             statusLabel.setText(currentPlayer + "'s turn" + (isAI && currentPlayer == PieceColor.BLACK ? " (AI Thinking)" : ""));
+            cancelAIMove();
+            ai.stopPondering();
+            if (isAIPhase) startAIMove();
+        });
+        JCheckBoxMenuItem ponderItem = new JCheckBoxMenuItem("Ponder (AI thinks on your time)", true);
+        ponderItem.addActionListener(e -> {
+            isPonder = ponderItem.isSelected();
+            if (!isPonder) ai.stopPondering();
         });
         JMenuItem undoItem = new JMenuItem("Undo");
         undoItem.addActionListener(e -> {
+            cancelAIMove();
+            ai.stopPondering();
+            int undone = history.size() > 0 ? history.getMove(history.size() - 1) : 0;
             if (history.undo(board)) {
+                position.unmakeMove(undone);
+                lastMove = history.getLastMove();
                 currentPlayer = currentPlayer == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
                 isAIPhase = isAI && currentPlayer == PieceColor.BLACK; // Update AI phase after undo
                 statusLabel.setText(currentPlayer + "'s turn" + (isAIPhase ? " (AI Thinking)" : ""));
                 timer.switchPlayer(); // Sync timer with player switch
                 updateBoard();
             }
+            if (isAIPhase) startAIMove();
         });
         JMenuItem redoItem = new JMenuItem("Redo");
         redoItem.addActionListener(e -> {
+            cancelAIMove();
+            ai.stopPondering();
             if (history.redo(board)) {
+                position.makeMove(history.getMove(history.size() - 1));
+                lastMove = history.getLastMove();
                 currentPlayer = currentPlayer == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
                 isAIPhase = isAI && currentPlayer == PieceColor.BLACK; // Update AI phase after redo
                 statusLabel.setText(currentPlayer + "'s turn" + (isAIPhase ? " (AI Thinking)" : ""));
                 timer.switchPlayer(); // Sync timer with player switch
                 updateBoard();
             }
+            if (isAIPhase) startAIMove();
         });
         JMenuItem resetTimerItem = new JMenuItem("Reset Timer");
-        resetTimerItem.addActionListener(e -> timer.reset());
+        resetTimerItem.addActionListener(e -> timer.reset(currentPlayer));
+        JMenuItem timeControlItem = new JMenuItem("Time Control...");
+        timeControlItem.addActionListener(e -> {
+            String text = JOptionPane.showInputDialog(this, "Seconds per game, e.g. 300, 180+2 (increment),"
+                    + " 300d3 (delay) or 40/5400+30:1800+30", timer.getTimeControl().toString());
+            if (text == null) return;
+            try {
+                timer.setTimeControl(TimeControl.parse(text));
+                timer.reset(currentPlayer);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, ex.getMessage());
+            }
+        });
         gameMenu.add(aiModeItem);
+        gameMenu.add(ponderItem);
         gameMenu.add(undoItem);
         gameMenu.add(redoItem);
         gameMenu.add(resetTimerItem);
+        gameMenu.add(timeControlItem);
+        JMenu fileMenu = new JMenu("File");
+        JMenuItem loadFenItem = new JMenuItem("Load FEN...");
+        loadFenItem.addActionListener(e -> loadFen());
+        JMenuItem copyFenItem = new JMenuItem("Copy FEN");
+        copyFenItem.addActionListener(e -> copyFen());
+        JMenuItem openPgnItem = new JMenuItem("Open PGN...");
+        openPgnItem.addActionListener(e -> openPgn());
+        JMenuItem savePgnItem = new JMenuItem("Save PGN...");
+        savePgnItem.addActionListener(e -> savePgn());
+        fileMenu.add(loadFenItem);
+        fileMenu.add(copyFenItem);
+        fileMenu.add(openPgnItem);
+        fileMenu.add(savePgnItem);
+        menuBar.add(fileMenu);
         menuBar.add(gameMenu);
         setJMenuBar(menuBar);
 
@@ -137,9 +218,7 @@ public class ChessGame extends JFrame {
         } else {
             for (Move move : possibleMoves) {
                 if (move.endRow == row && move.endCol == col) {
-                    lastMove = move;
-                    applyMove(board, move);
-                    history.addMove(move, board);
+                    applyMove(move);
                     currentPlayer = currentPlayer == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
                     isAIPhase = isAI && currentPlayer == PieceColor.BLACK;
                     statusLabel.setText(currentPlayer + "'s turn" + (isAIPhase ? " (AI Thinking)" : ""));
@@ -147,24 +226,7 @@ public class ChessGame extends JFrame {
                     checkGameState();
                     updateBoard();
                     if (isAIPhase) {
-                        // AI makes move for Black
-                        Timer aiTimer = new Timer(1000, e -> {
-                            Move aiMove = ai.getBestMove(board, PieceColor.BLACK);
-                            if (aiMove != null) {
-                                applyMove(board, aiMove);
-                                lastMove = aiMove;
-                                history.addMove(aiMove, board);
-                                currentPlayer = PieceColor.WHITE;
-                                isAIPhase = false;
-                                statusLabel.setText(currentPlayer + "'s turn");
-                                timer.switchPlayer();
-                                checkGameState();
-                                updateBoard();
-                            }
-                            ((Timer) e.getSource()).stop();
-                        });
-                        aiTimer.setRepeats(false);
-                        aiTimer.start();
+                        startAIMove(); // AI makes move for Black
                     }
                     break;
                 }
@@ -172,172 +234,259 @@ public class ChessGame extends JFrame {
             selectedRow = -1;
             selectedCol = -1;
             possibleMoves.clear();
+            boardView.setSelection(-1, -1, 0);
         }
     }
 
-    private List<Move> filterLegalMoves(List<Move> moves) {
-        List<Move> legalMoves = new ArrayList<>();
-        for (Move move : moves) {
-            Piece[][] tempBoard = cloneBoard(board);
-            applyMove(tempBoard, move);
-            if (!isInCheck(tempBoard, currentPlayer)) {
-                legalMoves.add(move);
-            }
+    private void startAIMove() {
+        cancelAIMove();
+        if (AI_MOVE_DELAY > 0) {
+            aiDelayTimer = new Timer(AI_MOVE_DELAY, e -> searchAIMove());
+            aiDelayTimer.setRepeats(false);
+            aiDelayTimer.start();
+        } else {
+            searchAIMove();
         }
-        return legalMoves;
     }
 
-    private void highlightPossibleMoves() {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                JLabel label = (JLabel) chessBoardPanel.getComponent(row * 8 + col);
-                label.setBackground((row + col) % 2 == 0 ? new Color(245, 245, 220) : new Color(139, 69, 19));
-                if (row == selectedRow && col == selectedCol) {
-                    label.setBackground(Color.CYAN);
-                }
-                for (Move move : possibleMoves) {
-                    if (move.endRow == row && move.endCol == col) {
-                        label.setBackground(Color.YELLOW);
+    // The search runs on the AI's thread; its progress and result are passed back to the event thread
+    private void searchAIMove() {
+        aiDelayTimer = null;
+        int id = aiSearchId;
+        int movesToGo = timer.getMovesToGo(PieceColor.BLACK);
+        long budget = (movesToGo > 0 ? new TimeManager(movesToGo) : timeManager)
+                .budgetFor(timer.getRemainingTime(PieceColor.BLACK), timer.getIncrement(PieceColor.BLACK))
+                + timer.getDelay(PieceColor.BLACK); // The delay is free time on every move
+        aiSearch = ai.startSearch(position, budget,
+                (depth, score, nodes) -> SwingUtilities.invokeLater(() -> {
+                    if (id == aiSearchId) {
+                        statusLabel.setText(String.format("%s's turn (AI Thinking: depth %d, score %+.2f, %,d nodes)",
+                                currentPlayer, depth, score / 100.0, nodes));
                     }
-                }
+                }));
+        aiSearch.whenComplete((aiMove, error) -> SwingUtilities.invokeLater(() -> {
+            if (id != aiSearchId || error instanceof CancellationException) return;
+            if (error != null) {
+                failAIMove(error);
+            } else {
+                finishAIMove(aiMove);
             }
+        }));
+    }
+
+    // The search threw: the player gets the move back instead of waiting for an AI move that never comes
+    private void failAIMove(Throwable error) {
+        aiSearch = null;
+        isAIPhase = false;
+        statusLabel.setText(currentPlayer + "'s turn (AI failed: " + error + ")");
+        JOptionPane.showMessageDialog(this, "The AI could not find a move: " + error);
+    }
+
+    private void finishAIMove(Move aiMove) {
+        aiSearch = null;
+        if (aiMove != null) {
+            applyMove(aiMove);
+            currentPlayer = PieceColor.WHITE;
+            isAIPhase = false;
+            statusLabel.setText(currentPlayer + "'s turn");
+            timer.switchPlayer();
+            checkGameState();
+            updateBoard();
+            if (isPonder) ai.startPondering(position);
         }
     }
 
-    private Piece[][] cloneBoard(Piece[][] original) {
-        Piece[][] copy = new Piece[8][8];
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (original[i][j] != null) {
-                    if (original[i][j] instanceof Pawn) {
-                        copy[i][j] = new Pawn(original[i][j].color);
-                    } else if (original[i][j] instanceof Rook) {
-                        copy[i][j] = new Rook(original[i][j].color);
-                    } else if (original[i][j] instanceof Knight) {
-                        copy[i][j] = new Knight(original[i][j].color);
-                    } else if (original[i][j] instanceof Bishop) {
-                        copy[i][j] = new Bishop(original[i][j].color);
-                    } else if (original[i][j] instanceof Queen) {
-                        copy[i][j] = new Queen(original[i][j].color);
-                    } else if (original[i][j] instanceof King) {
-                        copy[i][j] = new King(original[i][j].color);
-                    }
-                    copy[i][j].setHasMoved(original[i][j].hasMoved());
+    // Closing the window exits, but a loss on time only disposes it; both stop the clock and the AI
+    @Override
+    public void dispose() {
+        stopGame();
+        super.dispose();
+    }
+
+    private void stopGame() {
+        timer.stop();
+        cancelAIMove();
+        ai.shutdown();
+    }
+
+    private void cancelAIMove() {
+        aiSearchId++;
+        if (aiDelayTimer != null) {
+            aiDelayTimer.stop();
+            aiDelayTimer = null;
+        }
+        if (aiSearch != null) {
+            aiSearch.cancel(true);
+            aiSearch = null;
+        }
+    }
+
+    private List<Move> filterLegalMoves(List<Move> moves) {
+        int[] legal = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(legal);
+        List<Move> legalMoves = new ArrayList<>();
+        for (Move move : moves) {
+            int packed = position.toPackedMove(move);
+            for (int i = 0; i < count; i++) {
+                if (legal[i] == packed) {
+                    legalMoves.add(move);
+                    break;
                 }
             }
         }
-        return copy;
+        return legalMoves;
     }
 
-    private void applyMove(Piece[][] board, Move move) {
-        Piece piece = board[move.startRow][move.startCol];
-        piece.setHasMoved(true);
+    private void highlightPossibleMoves() {
+        long targets = 0;
+        for (Move move : possibleMoves) {
+            targets |= 1L << (move.endRow * 8 + move.endCol);
+        }
+        boardView.setSelection(selectedRow, selectedCol, targets);
+    }
 
-        // Castling
-        if (piece instanceof King && Math.abs(move.endCol - move.startCol) == 2) {
-            int rookCol = move.endCol > move.startCol ? 7 : 0;
-            int rookNewCol = move.endCol > move.startCol ? 5 : 3;
-            board[move.startRow][rookNewCol] = board[move.startRow][rookCol];
-            board[move.startRow][rookNewCol].setHasMoved(true);
-            board[move.startRow][rookCol] = null;
+    // Plays the move on the board through the history. AI moves name their promotion piece; the player is asked.
+    private void applyMove(Move move) {
+        Piece piece = board[move.startRow][move.startCol];
+        if (move.promotion == 0 && piece instanceof Pawn && (move.endRow == 0 || move.endRow == 7)) {
+            move.promotion = askPromotion();
         }
-        // En passant
-        else if (piece instanceof Pawn && move.endCol != move.startCol && board[move.endRow][move.endCol] == null) {
-            board[move.startRow][move.endCol] = null;
+        history.addMove(board, move);
+        position.makeMove(history.getMove(history.size() - 1));
+        lastMove = move;
+        boardView.animate(move);
+    }
+
+    private int askPromotion() {
+        String[] options = {"Queen", "Rook", "Bishop", "Knight"};
+        int[] types = {Position.QUEEN, Position.ROOK, Position.BISHOP, Position.KNIGHT};
+        String choice = (String) JOptionPane.showInputDialog(this, "Promote to:", "Pawn Promotion",
+                JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].equals(choice)) return types[i];
         }
-        // Promotion
-        else if (piece instanceof Pawn && (move.endRow == 0 || move.endRow == 7)) {
-            String[] options = {"Queen", "Rook", "Bishop", "Knight"};
-            String choice = (String) JOptionPane.showInputDialog(this, "Promote to:", "Pawn Promotion",
-                    JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
-            switch (choice) {
-                case "Queen": piece = new Queen(piece.color); break;
-                case "Rook": piece = new Rook(piece.color); break;
-                case "Bishop": piece = new Bishop(piece.color); break;
-                case "Knight": piece = new Knight(piece.color); break;
-            }
+        return Position.QUEEN; // Dialog closed
+    }
+
+    private void loadFen() {
+        String fen = JOptionPane.showInputDialog(this, "FEN:", position.toFen());
+        if (fen == null) return;
+        try {
+            loadGame(Position.fromFen(fen.trim()), new int[0]);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Invalid FEN: " + e.getMessage());
         }
+    }
 
-        board[move.endRow][move.endCol] = piece;
-        board[move.startRow][move.startCol] = null;
+    private void copyFen() {
+        String fen = position.toFen();
+        Toolkit.getDefaultToolkit().getSystemClipboard().setContents(new StringSelection(fen), null);
+        JOptionPane.showMessageDialog(this, "Copied to the clipboard:\n" + fen);
     }
 
-    private boolean isInCheck(Piece[][] board, PieceColor color) {
-        int kingRow = -1, kingCol = -1;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] instanceof King && board[r][c].color == color) {
-                    kingRow = r;
-                    kingCol = c;
-                    break;
-                }
-            }
+    // Loads the first game of a PGN file, positioned after its last move
+    private void openPgn() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        try (PgnReader reader = new PgnReader(chooser.getSelectedFile().toPath())) {
+            PgnReader.Game game = reader.next();
+            if (game == null) throw new IOException("the file has no game");
+            loadGame(game.startPosition(), game.resolveMoves());
+        } catch (IOException | IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, "Could not open the game: " + e.getMessage());
         }
-        PieceColor opponent = color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == opponent) {
-                    if (!(board[r][c] instanceof King)) {
-                        List<Move> moves = board[r][c].getPossibleMoves(board, r, c, lastMove);
-                        for (Move m : moves) {
-                            if (m.endRow == kingRow && m.endCol == kingCol) {
-                                return true;
-                            }
-                        }
-                    } else {
-                        int[][] kingDeltas = {{-1, -1}, {-1, 0}, {-1, 1}, {0, -1}, {0, 1}, {1, -1}, {1, 0}, {1, 1}};
-                        for (int[] delta : kingDeltas) {
-                            int kr = r + delta[0];
-                            int kc = c + delta[1];
-                            if (kr >= 0 && kr < 8 && kc >= 0 && kc < 8 && kr == kingRow && kc == kingCol) {
-                                return true;
-                            }
-                        }
-                    }
-                }
-            }
+    }
+
+    private void savePgn() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        int[] moves = new int[history.size()];
+        for (int ply = 0; ply < moves.length; ply++) {
+            moves[ply] = history.getMove(ply);
+        }
+        String result = "*";
+        if (!position.hasLegalMove()) {
+            boolean mated = position.isInCheck(position.getSideToMove());
+            result = !mated ? "1/2-1/2" : position.getSideToMove() == Position.WHITE ? "0-1" : "1-0";
+        }
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", "Casual game");
+        tags.put("Date", LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd")));
+        tags.put("White", "Player");
+        tags.put("Black", isAI ? "ChessInJava" : "Player");
+        try (PgnWriter out = new PgnWriter(chooser.getSelectedFile().toPath())) {
+            out.write(tags, Position.fromFen(startFen), moves, result);
+        } catch (IOException e) {
+            JOptionPane.showMessageDialog(this, "Could not save the game: " + e.getMessage());
         }
-        return false;
     }
 
-    private boolean hasLegalMoves(Piece[][] board, PieceColor color) {
-        for (int r = 0; r < 8; r++) {
-            for (int c = 0; c < 8; c++) {
-                if (board[r][c] != null && board[r][c].color == color) {
-                    List<Move> moves = board[r][c].getPossibleMoves(board, r, c, lastMove);
-                    for (Move move : moves) {
-                        Piece[][] tempBoard = cloneBoard(board);
-                        applyMove(tempBoard, move);
-                        if (!isInCheck(tempBoard, color)) {
-                            return true;
-                        }
-                    }
-                }
-            }
+    // Replaces the game with the moves played from the start position; undo goes back as far as the start
+    private void loadGame(Position start, int[] moves) {
+        if (start.isInCheck(start.getSideToMove() ^ 1)) {
+            throw new IllegalArgumentException("the side not to move is in check");
+        }
+        cancelAIMove();
+        ai.newGame();
+        Piece[][] loaded = start.toBoard();
+        for (int row = 0; row < 8; row++) {
+            System.arraycopy(loaded[row], 0, board[row], 0, 8);
         }
-        return false;
+        startFen = start.toFen();
+        history = new GameHistory();
+        lastMove = null;
+        if (start.epSquare >= 0) { // The double step that allows the capture
+            int behind = start.getSideToMove() == Position.WHITE ? 8 : -8;
+            lastMove = new Move(Position.row(start.epSquare + behind), Position.col(start.epSquare),
+                    Position.row(start.epSquare - behind), Position.col(start.epSquare));
+        }
+        position = new Position(start);
+        for (int move : moves) {
+            int from = Position.moveFrom(move);
+            int to = Position.moveTo(move);
+            history.addMove(board, new Move(Position.row(from), Position.col(from), Position.row(to), Position.col(to),
+                    Position.movePromotion(move)));
+            position.makeMove(move);
+        }
+        if (moves.length > 0) lastMove = history.getLastMove();
+        currentPlayer = position.getSideToMove() == Position.WHITE ? PieceColor.WHITE : PieceColor.BLACK;
+        timer.reset(currentPlayer);
+        selectedRow = -1;
+        selectedCol = -1;
+        possibleMoves.clear();
+        isAIPhase = isAI && currentPlayer == PieceColor.BLACK;
+        statusLabel.setText(currentPlayer + "'s turn" + (isAIPhase ? " (AI Thinking)" : ""));
+        updateBoard();
+        if (isAIPhase) startAIMove();
     }
 
     private void checkGameState() {
-        if (isInCheck(board, currentPlayer)) {
-            if (!hasLegalMoves(board, currentPlayer)) {
+        if (position.isInCheck(position.getSideToMove())) {
+            if (!position.hasLegalMove()) {
                 JOptionPane.showMessageDialog(this, "Checkmate! " + (currentPlayer == PieceColor.WHITE ? "Black" : "White") + " wins!");
-            } else {
+            } else if (!checkDraw()) {
                 JOptionPane.showMessageDialog(this, "Check!");
             }
-        } else if (!hasLegalMoves(board, currentPlayer)) {
+        } else if (!position.hasLegalMove()) {
             JOptionPane.showMessageDialog(this, "Stalemate!");
+        } else {
+            checkDraw();
         }
     }
 
+    // Announces a draw by repetition, the fifty-move rule or insufficient material; true if there is one
+    private boolean checkDraw() {
+        String reason = position.isRepetition(2) ? "threefold repetition"
+                : position.isFiftyMoveDraw() ? "the fifty-move rule"
+                : position.hasInsufficientMaterial() ? "insufficient material" : null;
+        if (reason == null) return false;
+        JOptionPane.showMessageDialog(this, "Draw by " + reason + "!");
+        return true;
+    }
+
     private void updateBoard() {
-        for (int row = 0; row < 8; row++) {
-            for (int col = 0; col < 8; col++) {
-                JLabel label = (JLabel) chessBoardPanel.getComponent(row * 8 + col);
-                label.setText(board[row][col] != null ? board[row][col].getCharacter() : "");
-                label.setBackground((row + col) % 2 == 0 ? new Color(245, 245, 220) : new Color(139, 69, 19));
-            }
-        }
+        boardView.setSelection(-1, -1, 0);
+        boardView.refresh();
     }
 
     public static void main(String[] args) {
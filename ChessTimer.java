@@ -1,27 +1,30 @@
 import javax.swing.*;
 import java.awt.*;
-import java.util.Timer;
-import java.util.TimerTask;
 
+// The clock panel above the board. The time is kept by a ChessClock; a Swing timer only repaints the labels,
+// on the event thread, and the clock reports a flag there too.
 public class ChessTimer {
+    private static final String DEFAULT_TIME_CONTROL = "300"; // 5 minutes each
+    private static final int REPAINT_MILLIS = 100;
+
     private JLabel whiteTimeLabel;
     private JLabel blackTimeLabel;
-    private long whiteTime = 5 * 60 * 1000; // 5 minutes in milliseconds
-    private long blackTime = 5 * 60 * 1000;
-    private PieceColor currentPlayer;
-    private Timer timer;
+    private ChessClock clock;
+    private final Timer repaint;
     private ChessGame game;
 
     public ChessTimer(ChessGame game) {
         this.game = game;
-        this.currentPlayer = PieceColor.WHITE;
+        clock = newClock(TimeControl.parse(DEFAULT_TIME_CONTROL));
         setupLabels();
-        startTimer();
+        repaint = new Timer(REPAINT_MILLIS, e -> updateLabels());
+        repaint.start();
+        clock.start(Position.WHITE);
     }
 
     private void setupLabels() {
-        whiteTimeLabel = new JLabel(formatTime(whiteTime));
-        blackTimeLabel = new JLabel(formatTime(blackTime));
+        whiteTimeLabel = new JLabel(formatTime(clock.getRemainingTime(Position.WHITE)));
+        blackTimeLabel = new JLabel(formatTime(clock.getRemainingTime(Position.BLACK)));
         JPanel timePanel = new JPanel(new GridLayout(1, 2));
         timePanel.add(new JLabel("White: "));
         timePanel.add(whiteTimeLabel);
@@ -30,55 +33,76 @@ public class ChessTimer {
         game.add(timePanel, BorderLayout.NORTH);
     }
 
+    private ChessClock newClock(TimeControl control) {
+        return new ChessClock(control, SwingUtilities::invokeLater, color -> {
+            stop();
+            updateLabels();
+            String winner = color == Position.WHITE ? "Black" : "White";
+            JOptionPane.showMessageDialog(game, "Time's up! " + winner + " wins!");
+            game.dispose();
+        });
+    }
+
+    // The side to move has moved: charges its time, adds its increment and starts the other side's time
     public void switchPlayer() {
-        if (timer != null) timer.cancel();
-        currentPlayer = currentPlayer == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE;
-        startTimer();
+        clock.press();
         updateLabels();
     }
 
-    private void startTimer() {
-        timer = new Timer();
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (currentPlayer == PieceColor.WHITE) {
-                    whiteTime -= 100;
-                    if (whiteTime <= 0) {
-                        timer.cancel();
-                        JOptionPane.showMessageDialog(game, "Time's up! Black wins!");
-                        game.dispose();
-                    }
-                } else {
-                    blackTime -= 100;
-                    if (blackTime <= 0) {
-                        timer.cancel();
-                        JOptionPane.showMessageDialog(game, "Time's up! White wins!");
-                        game.dispose();
-                    }
-                }
-                updateLabels();
-            }
-        }, 0, 100);
+    public long getRemainingTime(PieceColor color) {
+        return clock.getRemainingTime(Position.toColor(color));
+    }
+
+    public long getIncrement(PieceColor color) {
+        return clock.getIncrement(Position.toColor(color));
+    }
+
+    public long getDelay(PieceColor color) {
+        return clock.getDelay(Position.toColor(color));
+    }
+
+    public int getMovesToGo(PieceColor color) {
+        return clock.getMovesToGo(Position.toColor(color));
+    }
+
+    public TimeControl getTimeControl() {
+        return clock.getTimeControl();
+    }
+
+    // Switches to the time control with both clocks stopped at its start; reset starts them
+    public void setTimeControl(TimeControl control) {
+        clock.stop();
+        clock = newClock(control);
+        updateLabels();
     }
 
     private void updateLabels() {
-        whiteTimeLabel.setText(formatTime(whiteTime));
-        blackTimeLabel.setText(formatTime(blackTime));
+        whiteTimeLabel.setText(formatTime(clock.getRemainingTime(Position.WHITE)));
+        blackTimeLabel.setText(formatTime(clock.getRemainingTime(Position.BLACK)));
     }
 
+    // Minutes and seconds, with tenths in the last ten seconds
     private String formatTime(long millis) {
         long minutes = millis / (60 * 1000);
         long seconds = (millis % (60 * 1000)) / 1000;
+        if (millis < 10_000) return String.format("%02d:%02d.%d", minutes, seconds, millis % 1000 / 100);
         return String.format("%02d:%02d", minutes, seconds);
     }
 
+    // Stops the clock and the label updates for good, so no timer keeps running once the window is gone
+    public void stop() {
+        clock.stop();
+        repaint.stop();
+    }
+
     public void reset() {
-        whiteTime = 5 * 60 * 1000;
-        blackTime = 5 * 60 * 1000;
-        currentPlayer = PieceColor.WHITE;
-        if (timer != null) timer.cancel();
-        startTimer();
+        reset(PieceColor.WHITE);
+    }
+
+    // Restarts both clocks with the given side to move
+    public void reset(PieceColor toMove) {
+        clock.reset();
+        clock.start(Position.toColor(toMove));
         updateLabels();
     }
 }
@@ -0,0 +1,123 @@
+// Material and piece-square evaluation, tapered between midgame and endgame by the material left on the board.
+// Position keeps the midgame and endgame sums and the phase up to date in put/remove, so evaluating a
+// position is a constant-time read.
+public final class Evaluation {
+    // Phase weight of each piece type; the starting position has the full MAX_PHASE
+    static final int[] PHASE = {0, 1, 1, 2, 4, 0};
+    static final int MAX_PHASE = 24;
+
+    private static final int[] MG_VALUES = {82, 337, 365, 477, 1025, 0};
+    private static final int[] EG_VALUES = {94, 281, 297, 512, 936, 0};
+
+    // Tables are written from White's side as seen on the board: the first row is rank 8, the last rank 1
+    private static final int[] PAWN_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] PAWN_ENDGAME_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            80, 80, 80, 80, 80, 80, 80, 80,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            30, 30, 30, 30, 30, 30, 30, 30,
+            20, 20, 20, 20, 20, 20, 20, 20,
+            10, 10, 10, 10, 10, 10, 10, 10,
+            0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0
+    };
+    private static final int[] KNIGHT_TABLE = {
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50
+    };
+    private static final int[] BISHOP_TABLE = {
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20
+    };
+    private static final int[] ROOK_TABLE = {
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            0, 0, 0, 5, 5, 0, 0, 0
+    };
+    private static final int[] QUEEN_TABLE = {
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20
+    };
+    private static final int[] KING_TABLE = {
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            20, 30, 10, 0, 0, 10, 30, 20
+    };
+    private static final int[] KING_ENDGAME_TABLE = {
+            -50, -40, -30, -20, -20, -30, -40, -50,
+            -30, -20, -10, 0, 0, -10, -20, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 30, 40, 40, 30, -10, -30,
+            -30, -10, 20, 30, 30, 20, -10, -30,
+            -30, -30, 0, 0, 0, 0, -30, -30,
+            -50, -30, -30, -30, -30, -30, -30, -50
+    };
+
+    // Value plus table bonus per piece code and square, positive for White and negative for Black
+    static final int[][] MG = new int[12][64];
+    static final int[][] EG = new int[12][64];
+
+    static {
+        int[][] midgame = {PAWN_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_TABLE};
+        int[][] endgame = {PAWN_ENDGAME_TABLE, KNIGHT_TABLE, BISHOP_TABLE, ROOK_TABLE, QUEEN_TABLE, KING_ENDGAME_TABLE};
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            for (int sq = 0; sq < 64; sq++) {
+                // Table index of a square for White (rank 8 first), and its mirror for Black
+                int white = sq ^ 56;
+                int black = sq;
+                MG[Position.piece(Position.WHITE, type)][sq] = MG_VALUES[type] + midgame[type][white];
+                EG[Position.piece(Position.WHITE, type)][sq] = EG_VALUES[type] + endgame[type][white];
+                MG[Position.piece(Position.BLACK, type)][sq] = -(MG_VALUES[type] + midgame[type][black]);
+                EG[Position.piece(Position.BLACK, type)][sq] = -(EG_VALUES[type] + endgame[type][black]);
+            }
+        }
+    }
+
+    private Evaluation() {
+    }
+
+    // Score from the point of view of the side to move, in centipawns
+    public static int evaluate(Position position) {
+        int phase = Math.min(position.phase, MAX_PHASE); // Early promotions can push the phase past the start
+        int score = (position.mgScore * phase + position.egScore * (MAX_PHASE - phase)) / MAX_PHASE;
+        return position.getSideToMove() == Position.WHITE ? score : -score;
+    }
+}
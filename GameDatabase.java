@@ -0,0 +1,532 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// A binary game store: one append-only file of games as packed moves, memory-mapped for reading, and an index
+// from the Zobrist key of every position reached to the games that reached it. Moves are replayed through
+// Position, so the database works without the GUI.
+//
+// Games file: an 8-byte header (magic, number of games), then one record per game, found by its offset:
+// length (4 bytes, not counting itself), result (1), length of the tag text (2), the tags as "name\tvalue\n"
+// in ISO-8859-1, then 2 bytes per ply holding the move's squares and promotion as packed by Position. The
+// flags are restored when the moves are replayed.
+// Index file (<games file>.idx): a 16-byte header (magic, bytes of the games file covered), then 16-byte
+// entries (key, game offset) sorted by unsigned key and then offset, binary-searched in place.
+// Usage: java GameDatabase import <db> <pgn>... | index <db> [threads] | find <db> <fen> [max]
+public class GameDatabase implements Closeable {
+    private static final int MAGIC = 0x43474431; // "CGD1"
+    private static final int INDEX_MAGIC = 0x43474931; // "CGI1"
+    private static final int HEADER_SIZE = 8;
+    private static final int INDEX_HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 16;
+    private static final int MAX_PLIES = 0xFFFF;
+    private static final int MAX_TAG_TEXT = 0xFFFF;
+    private static final int MAX_RECORD = 1 << 18; // Fits the largest game allowed by the two limits above
+    private static final int SEGMENT_SIZE = 1 << 30; // One buffer maps at most 2 GB, so files are mapped in pieces
+    private static final int MOVE_MASK = (1 << 15) - 1; // Squares and promotion
+    private static final int BATCH_GAMES = 4096; // Games per sorted run when indexing
+    private static final int BUFFER_SIZE = 1 << 16; // A multiple of ENTRY_SIZE
+    private static final String[] RESULTS = {"*", "1-0", "0-1", "1/2-1/2"};
+
+    private final Path indexFile;
+    private final FileChannel channel;
+    private final Mapping games;
+    private volatile Mapping index; // Null until an index is built
+    private volatile long end; // Size of the games file
+    private int count;
+
+    public static final class Game {
+        public final long offset;
+        public final Map<String, String> tags = new LinkedHashMap<>();
+        public final String result;
+        public final int[] moves; // Packed moves from the start position
+
+        private Game(long offset, String result, int plies) {
+            this.offset = offset;
+            this.result = result;
+            this.moves = new int[plies];
+        }
+
+        // The starting position, from the FEN tag if the game has one
+        public Position startPosition() {
+            String fen = tags.get("FEN");
+            return Position.fromFen(fen != null ? fen : Position.START_FEN);
+        }
+    }
+
+    // Opens the database, creating an empty one if the games file does not exist
+    public GameDatabase(Path file) throws IOException {
+        indexFile = file.resolveSibling(file.getFileName() + ".idx");
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        end = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        if (end == 0) {
+            header.putInt(MAGIC).putInt(0).flip();
+            write(header, 0);
+            end = HEADER_SIZE;
+        } else if (end < HEADER_SIZE || channel.read(header, 0) < HEADER_SIZE || header.getInt(0) != MAGIC) {
+            channel.close();
+            throw new IOException("Not a game database: " + file);
+        }
+        count = header.getInt(4);
+        games = new Mapping(channel, MAX_RECORD);
+        if (Files.exists(indexFile)) openIndex();
+    }
+
+    // Number of games stored
+    public synchronized int size() {
+        return count;
+    }
+
+    // Appends a game given as legal packed moves from the start position and returns its offset. The SetUp and
+    // FEN tags are written when the game does not start from the initial position.
+    public synchronized long add(Map<String, String> tags, Position start, int[] moves, String result)
+            throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            if (tag.getKey().equals("SetUp") || tag.getKey().equals("FEN")) continue;
+            text.append(tag.getKey()).append('\t').append(tag.getValue().replace('\t', ' ').replace('\n', ' '))
+                    .append('\n');
+        }
+        String fen = start.toFen();
+        if (!fen.equals(Position.START_FEN)) text.append("SetUp\t1\nFEN\t").append(fen).append('\n');
+        byte[] tagText = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (tagText.length > MAX_TAG_TEXT || moves.length > MAX_PLIES) {
+            throw new IllegalArgumentException("Game too long to store");
+        }
+        int resultCode = Arrays.asList(RESULTS).indexOf(result);
+        ByteBuffer record = ByteBuffer.allocate(7 + tagText.length + 2 * moves.length);
+        record.putInt(record.capacity() - 4).put((byte) Math.max(0, resultCode))
+                .putShort((short) tagText.length).put(tagText);
+        for (int move : moves) {
+            record.putShort((short) (move & MOVE_MASK));
+        }
+        long offset = end;
+        write(record.flip(), offset);
+        write(ByteBuffer.allocate(4).putInt(0, count + 1), 4);
+        count++;
+        end = offset + record.capacity();
+        return offset;
+    }
+
+    // Appends a game read by PgnReader; its moves must be legal
+    public long add(PgnReader.Game game) throws IOException {
+        return add(game.tags, game.startPosition(), game.resolveMoves(), game.result);
+    }
+
+    // Offset of the first game; the games file ends at getEnd()
+    public long firstGame() {
+        return HEADER_SIZE;
+    }
+
+    public long nextGame(long offset) throws IOException {
+        return offset + 4 + recordLength(offset);
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public Game read(long offset) throws IOException {
+        return read(offset, null);
+    }
+
+    // Reads the game at the offset, replaying its moves to restore their flags. The keys of all positions
+    // reached, the start included, are added to the run if one is given.
+    private Game read(long offset, Run run) throws IOException {
+        int length = recordLength(offset);
+        MappedByteBuffer buffer = games.segment(offset, 4 + length);
+        int at = (int) (offset % SEGMENT_SIZE) + 4;
+        int result = buffer.get(at);
+        int tagLength = buffer.getShort(at + 1) & 0xFFFF;
+        if (result < 0 || result >= RESULTS.length || 3 + tagLength > length) {
+            throw new IOException("Corrupt game record at " + offset);
+        }
+        Game game = new Game(offset, RESULTS[result], (length - 3 - tagLength) / 2);
+        byte[] text = new byte[tagLength];
+        buffer.get(at + 3, text);
+        for (String line : new String(text, StandardCharsets.ISO_8859_1).split("\n")) {
+            int tab = line.indexOf('\t');
+            if (tab > 0) game.tags.put(line.substring(0, tab), line.substring(tab + 1));
+        }
+        Position position = game.startPosition();
+        int moves = at + 3 + tagLength;
+        if (run != null) run.add(position.getKey(), offset);
+        for (int ply = 0; ply < game.moves.length; ply++) {
+            game.moves[ply] = position.withFlags(buffer.getShort(moves + 2 * ply) & MOVE_MASK);
+            position.makeMove(game.moves[ply]);
+            if (run != null) run.add(position.getKey(), offset);
+        }
+        return game;
+    }
+
+    private int recordLength(long offset) throws IOException {
+        if (offset < HEADER_SIZE || offset + 4 > end) throw new IllegalArgumentException("No game at " + offset);
+        int length = games.segment(offset, 4).getInt((int) (offset % SEGMENT_SIZE));
+        if (length < 3 || length > MAX_RECORD - 4 || offset + 4 + length > end) {
+            throw new IOException("Corrupt game record at " + offset);
+        }
+        return length;
+    }
+
+    // Number of indexed games that reached the position. Games added since the last buildIndex are not counted.
+    public int countGames(Position position) {
+        Mapping entries = index;
+        if (entries == null) return 0;
+        long key = position.getKey();
+        return (int) (bound(entries, key, true) - bound(entries, key, false));
+    }
+
+    // Offsets of the first max indexed games that reached the position, in the order they were added
+    public long[] findGames(Position position, int max) throws IOException {
+        Mapping entries = index;
+        if (entries == null) return new long[0];
+        long key = position.getKey();
+        long first = bound(entries, key, false);
+        int found = (int) Math.min(max, bound(entries, key, true) - first);
+        long[] offsets = new long[found];
+        for (int i = 0; i < found; i++) {
+            offsets[i] = entry(entries, first + i).getLong(entryPosition(first + i) + 8);
+        }
+        return offsets;
+    }
+
+    // First entry whose key is above the given one (upper) or not below it, comparing keys as unsigned numbers
+    private static long bound(Mapping entries, long key, boolean upper) {
+        long low = 0;
+        long high = entries.entryCount;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            int comparison = Long.compareUnsigned(entry(entries, mid).getLong(entryPosition(mid)), key);
+            if (comparison < 0 || (upper && comparison == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static MappedByteBuffer entry(Mapping entries, long entry) {
+        try {
+            return entries.segment(INDEX_HEADER_SIZE + entry * ENTRY_SIZE, ENTRY_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // The index file is mapped whole when opened
+        }
+    }
+
+    private static int entryPosition(long entry) {
+        return (int) ((INDEX_HEADER_SIZE + entry * ENTRY_SIZE) % SEGMENT_SIZE);
+    }
+
+    // Indexes the games added since the last build on the given number of threads. Each batch of games is
+    // replayed and its positions sorted into a temporary run file; the runs and the old index are then merged
+    // into the new index, so memory use depends on the batch size and not on the number of games.
+    public synchronized void buildIndex(int threads) throws IOException, InterruptedException {
+        Mapping old = index;
+        long from = old != null ? old.covered : HEADER_SIZE;
+        if (old != null && from == end) return;
+        List<Path> runs = new ArrayList<>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<Path>> futures = new ArrayList<>();
+            for (long offset = from; offset < end; ) {
+                long batchStart = offset;
+                for (int game = 0; game < BATCH_GAMES && offset < end; game++) {
+                    offset = nextGame(offset);
+                }
+                long batchEnd = offset;
+                futures.add(pool.submit(() -> writeRun(batchStart, batchEnd)));
+            }
+            for (Future<Path> future : futures) {
+                try {
+                    runs.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IOException("Indexing failed", e.getCause());
+                }
+            }
+            if (old != null) runs.add(indexFile);
+            Path merged = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+            try {
+                merge(runs, merged, end);
+                Files.move(merged, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(merged);
+            }
+        } finally {
+            pool.shutdownNow();
+            for (Path run : runs) {
+                if (!run.equals(indexFile)) Files.deleteIfExists(run);
+            }
+        }
+        openIndex();
+    }
+
+    // Replays the games in [start, end) and writes their (key, offset) entries, sorted and without repeats
+    private Path writeRun(long start, long end) throws IOException {
+        Run run = new Run();
+        for (long offset = start; offset < end; offset = nextGame(offset)) {
+            read(offset, run);
+        }
+        run.sort();
+        Path file = Files.createTempFile(indexFile.toAbsolutePath().getParent(), "index", ".run");
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(INDEX_MAGIC).putInt(0).putLong(end);
+            for (int i = 0; i < run.size; i++) {
+                if (i > 0 && run.keys[i] == run.keys[i - 1] && run.offsets[i] == run.offsets[i - 1]) continue;
+                if (!buffer.hasRemaining()) drain(out, buffer);
+                buffer.putLong(run.keys[i]).putLong(run.offsets[i]);
+            }
+            drain(out, buffer);
+        }
+        return file;
+    }
+
+    // Merges sorted entry files (runs or an old index, all with the index header) into a new index
+    private static void merge(List<Path> inputs, Path output, long covered) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>((a, b) -> a.key != b.key
+                ? Long.compareUnsigned(a.key, b.key) : Long.compare(a.offset, b.offset));
+        try (FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Path input : inputs) {
+                RunReader reader = new RunReader(input);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.in.close();
+                }
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.putInt(INDEX_MAGIC).putInt(0).putLong(covered);
+            while (!queue.isEmpty()) {
+                RunReader reader = queue.poll();
+                if (!buffer.hasRemaining()) drain(out, buffer);
+                buffer.putLong(reader.key).putLong(reader.offset);
+                if (reader.next()) {
+                    queue.add(reader);
+                } else {
+                    reader.in.close();
+                }
+            }
+            drain(out, buffer);
+        } finally {
+            for (RunReader reader : queue) {
+                reader.in.close();
+            }
+        }
+    }
+
+    private static void drain(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void openIndex() throws IOException {
+        try (FileChannel file = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            if (file.read(header, 0) < INDEX_HEADER_SIZE || header.getInt(0) != INDEX_MAGIC
+                    || (file.size() - INDEX_HEADER_SIZE) % ENTRY_SIZE != 0) {
+                throw new IOException("Not a game database index: " + indexFile);
+            }
+            Mapping entries = new Mapping(file, 0);
+            entries.covered = header.getLong(8);
+            entries.entryCount = (file.size() - INDEX_HEADER_SIZE) / ENTRY_SIZE;
+            for (long offset = 0; offset < file.size(); offset += SEGMENT_SIZE) {
+                entries.segment(offset, 0); // Map every piece now: the mappings outlive the channel
+            }
+            index = entries;
+        }
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // A file mapped in SEGMENT_SIZE pieces, each extended by the overlap so a record that starts in a piece can
+    // be read from it whole. A piece is mapped again once the file has grown past it.
+    private static final class Mapping {
+        private final FileChannel channel;
+        private final int overlap;
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+        long covered; // For an index: bytes of the games file it covers
+        long entryCount;
+
+        Mapping(FileChannel channel, int overlap) {
+            this.channel = channel;
+            this.overlap = overlap;
+        }
+
+        // The piece holding the bytes [offset, offset + length), at offset % SEGMENT_SIZE
+        MappedByteBuffer segment(long offset, int length) throws IOException {
+            int index = (int) (offset / SEGMENT_SIZE);
+            long needed = offset % SEGMENT_SIZE + length;
+            MappedByteBuffer[] mapped = segments;
+            if (index < mapped.length && mapped[index] != null && mapped[index].capacity() >= needed) {
+                return mapped[index];
+            }
+            return remap(index, needed);
+        }
+
+        private synchronized MappedByteBuffer remap(int index, long needed) throws IOException {
+            MappedByteBuffer[] mapped = Arrays.copyOf(segments, Math.max(segments.length, index + 1));
+            if (mapped[index] == null || mapped[index].capacity() < needed) {
+                long start = (long) index * SEGMENT_SIZE;
+                long size = Math.min(channel.size() - start, (long) SEGMENT_SIZE + overlap);
+                if (size < needed) throw new IOException("Read past the end of the file");
+                mapped[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            }
+            segments = mapped;
+            return mapped[index];
+        }
+    }
+
+    // The (key, offset) entries of one batch of games
+    private static final class Run {
+        long[] keys = new long[1 << 16];
+        long[] offsets = new long[1 << 16];
+        int size;
+
+        void add(long key, long offset) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2);
+            }
+            keys[size] = key;
+            offsets[size++] = offset;
+        }
+
+        // Radix sort on the unsigned key, a byte at a time from the lowest. It is stable and the entries were
+        // added in offset order, so entries with the same key stay sorted by offset.
+        void sort() {
+            long[] keyBuffer = new long[size];
+            long[] offsetBuffer = new long[size];
+            int[] counts = new int[257];
+            for (int shift = 0; shift < 64; shift += 8) {
+                Arrays.fill(counts, 0);
+                for (int i = 0; i < size; i++) {
+                    counts[(int) (keys[i] >>> shift & 0xFF) + 1]++;
+                }
+                if (counts[(int) (keys[0] >>> shift & 0xFF) + 1] == size) continue; // All alike in this byte
+                for (int digit = 0; digit < 256; digit++) {
+                    counts[digit + 1] += counts[digit];
+                }
+                for (int i = 0; i < size; i++) {
+                    int to = counts[(int) (keys[i] >>> shift & 0xFF)]++;
+                    keyBuffer[to] = keys[i];
+                    offsetBuffer[to] = offsets[i];
+                }
+                long[] swap = keys;
+                keys = keyBuffer;
+                keyBuffer = swap;
+                swap = offsets;
+                offsets = offsetBuffer;
+                offsetBuffer = swap;
+            }
+        }
+    }
+
+    // Reads the entries of a run or index file in order
+    private static final class RunReader {
+        final FileChannel in;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private long remaining;
+        long key;
+        long offset;
+
+        RunReader(Path file) throws IOException {
+            in = FileChannel.open(file, StandardOpenOption.READ);
+            remaining = (in.size() - INDEX_HEADER_SIZE) / ENTRY_SIZE;
+            in.position(INDEX_HEADER_SIZE);
+            buffer.flip();
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) return false;
+            remaining--;
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                while (buffer.position() == 0 || buffer.position() % ENTRY_SIZE != 0) { // Whole entries only
+                    if (in.read(buffer) < 0) throw new IOException("Truncated index run");
+                }
+                buffer.flip();
+            }
+            key = buffer.getLong();
+            offset = buffer.getLong();
+            return true;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2 || !Arrays.asList("import", "index", "find").contains(args[0])
+                || (args[0].equals("import") && args.length < 3) || (args[0].equals("find") && args.length < 3)) {
+            System.out.println("Usage: java GameDatabase import <db> <pgn>... | index <db> [threads]"
+                    + " | find <db> <fen> [max]");
+            System.exit(1);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        try (GameDatabase database = new GameDatabase(Paths.get(args[1]))) {
+            long start = System.nanoTime();
+            switch (args[0]) {
+                case "import":
+                    for (int i = 2; i < args.length; i++) {
+                        // Games are added as workers finish them, so with several threads the order may differ
+                        PgnReader.forEachGame(Paths.get(args[i]), threads, (game, moves) -> {
+                            try {
+                                database.add(game.tags, game.startPosition(), moves, game.result);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                    }
+                    System.out.printf("%d games in the database%n", database.size());
+                    break;
+                case "index":
+                    if (args.length > 2) threads = Integer.parseInt(args[2]);
+                    database.buildIndex(threads);
+                    System.out.printf("%d games, %d positions indexed%n", database.size(), database.index.entryCount);
+                    break;
+                default:
+                    Position position = Position.fromFen(args[2]);
+                    long[] offsets = database.findGames(position, args.length > 3 ? Integer.parseInt(args[3]) : 20);
+                    for (long offset : offsets) {
+                        Game game = database.read(offset);
+                        System.out.printf("%d: %s - %s %s %s%n", offset, game.tags.getOrDefault("White", "?"),
+                                game.tags.getOrDefault("Black", "?"), game.result, game.tags.getOrDefault("Date", "?"));
+                    }
+                    System.out.printf("%d games reached the position%n", database.countGames(position));
+                    break;
+            }
+            System.out.printf("%.3f s%n", (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
@@ -1,97 +1,150 @@
-import java.util.Stack;
+import java.util.Arrays;
 
+// The moves of the game as an append-only log of packed moves (Position's encoding), each with an undo record
+// of what the move destroyed: the captured piece and whether it and the moving piece had moved before.
+// Castling rights and en passant follow from those flags and the previous move, so undo and redo restore the
+// board exactly, in constant time and with two ints of memory per ply.
 public class GameHistory {
-    private Stack<Move> moves = new Stack<>();
-    private Stack<Move> undos = new Stack<>();
-    private Piece[][] board;
+    private static final int CAPTURED_MASK = 15; // Captured piece code + 1, 0 for none
+    private static final int CAPTURED_MOVED = 1 << 4;
+    private static final int PIECE_MOVED = 1 << 5;
 
-    public GameHistory(Piece[][] initialBoard) {
-        this.board = cloneBoard(initialBoard);
-    }
+    private int[] moves = new int[128];
+    private int[] undos = new int[128];
+    private int size; // Moves on the board
+    private int length; // Moves on the board plus the undone ones that can be redone
 
-    public void addMove(Move move, Piece[][] currentBoard) {
-        moves.push(move);
-        undos.clear(); // Clear redos when a new move is made
-        this.board = cloneBoard(currentBoard);
+    // Plays the move on the board and records it; undone moves can no longer be redone.
+    // A pawn reaching the last rank becomes the move's promotion piece, or a queen if it names none.
+    public void addMove(Piece[][] board, Move move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+            undos = Arrays.copyOf(undos, size * 2);
+        }
+        moves[size] = pack(board, move);
+        undos[size] = apply(board, moves[size]);
+        length = ++size;
     }
 
     public boolean undo(Piece[][] board) {
-        if (moves.isEmpty()) return false;
-        Move lastMove = moves.pop();
-        undos.push(lastMove);
-        revertMove(board, lastMove);
+        if (size == 0) return false;
+        size--;
+        revert(board, moves[size], undos[size]);
         return true;
     }
 
     public boolean redo(Piece[][] board) {
-        if (undos.isEmpty()) return false;
-        Move nextMove = undos.pop();
-        applyMove(board, nextMove);
-        moves.push(nextMove);
+        if (size == length) return false;
+        undos[size] = apply(board, moves[size]);
+        size++;
         return true;
     }
 
-    private void applyMove(Piece[][] board, Move move) {
-        Piece piece = board[move.startRow][move.startCol];
-        piece.setHasMoved(true);
+    // The move that led to the current board, or null at the start
+    public Move getLastMove() {
+        if (size == 0) return null;
+        int move = moves[size - 1];
+        return new Move(Position.row(Position.moveFrom(move)), Position.col(Position.moveFrom(move)),
+                Position.row(Position.moveTo(move)), Position.col(Position.moveTo(move)),
+                Position.movePromotion(move));
+    }
 
-        if (piece instanceof King && Math.abs(move.endCol - move.startCol) == 2) {
-            int rookCol = move.endCol > move.startCol ? 7 : 0;
-            int rookNewCol = move.endCol > move.startCol ? 5 : 3;
-            board[move.startRow][rookNewCol] = board[move.startRow][rookCol];
-            board[move.startRow][rookNewCol].setHasMoved(true);
-            board[move.startRow][rookCol] = null;
-        } else if (piece instanceof Pawn && move.endCol != move.startCol && board[move.endRow][move.endCol] == null) {
-            board[move.startRow][move.endCol] = null;
-        } else if (piece instanceof Pawn && (move.endRow == 0 || move.endRow == 7)) {
-            // Simulate promotion (default to Queen for simplicity)
-            piece = new Queen(piece.color);
-        }
+    // Moves on the board
+    public int size() {
+        return size;
+    }
 
-        board[move.endRow][move.endCol] = piece;
-        board[move.startRow][move.startCol] = null;
+    // The packed move played at the given ply, counting from 0
+    public int getMove(int ply) {
+        if (ply < 0 || ply >= size) throw new IndexOutOfBoundsException("ply " + ply);
+        return moves[ply];
     }
 
-    private void revertMove(Piece[][] board, Move move) {
-        Piece piece = board[move.endRow][move.endCol];
-        piece.setHasMoved(false); // Reset hasMoved for castling/en passant
+    private static int pack(Piece[][] board, Move move) {
+        Piece piece = board[move.startRow][move.startCol];
+        int flags = board[move.endRow][move.endCol] != null ? Position.CAPTURE : 0;
+        int promotion = 0;
+        if (piece instanceof Pawn) {
+            if (move.endCol != move.startCol && board[move.endRow][move.endCol] == null) {
+                flags |= Position.CAPTURE | Position.EN_PASSANT;
+            }
+            if (move.endRow == 0 || move.endRow == 7) {
+                promotion = move.promotion != 0 ? move.promotion : Position.QUEEN;
+            }
+        } else if (piece instanceof King && Math.abs(move.endCol - move.startCol) == 2) {
+            flags |= Position.CASTLE;
+        }
+        return Position.move(Position.square(move.startRow, move.startCol), Position.square(move.endRow, move.endCol),
+                promotion, flags);
+    }
+
+    // Plays a packed move on the board and returns its undo record
+    private static int apply(Piece[][] board, int move) {
+        int fromRow = Position.row(Position.moveFrom(move));
+        int fromCol = Position.col(Position.moveFrom(move));
+        int toRow = Position.row(Position.moveTo(move));
+        int toCol = Position.col(Position.moveTo(move));
+        int capturedRow = (move & Position.EN_PASSANT) != 0 ? fromRow : toRow;
 
-        if (piece instanceof King && Math.abs(move.endCol - move.startCol) == 2) {
-            int rookCol = move.endCol > move.startCol ? 5 : 3;
-            int rookNewCol = move.endCol > move.startCol ? 7 : 0;
-            board[move.startRow][rookNewCol] = board[move.startRow][rookCol];
-            board[move.startRow][rookCol] = null;
-        } else if (piece instanceof Pawn && move.endCol != move.startCol && board[move.startRow][move.endCol] != null) {
-            // Restore pawn for en passant
-            board[move.startRow][move.endCol] = new Pawn(piece.color == PieceColor.WHITE ? PieceColor.BLACK : PieceColor.WHITE);
+        Piece piece = board[fromRow][fromCol];
+        int undo = piece.hasMoved() ? PIECE_MOVED : 0;
+        Piece captured = board[capturedRow][toCol];
+        if (captured != null) {
+            undo |= Position.piece(Position.toColor(captured.color), Position.typeOf(captured)) + 1;
+            if (captured.hasMoved()) undo |= CAPTURED_MOVED;
+            board[capturedRow][toCol] = null;
+        }
+        if ((move & Position.CASTLE) != 0) {
+            int rookCol = toCol > fromCol ? 7 : 0;
+            int rookNewCol = toCol > fromCol ? 5 : 3;
+            board[fromRow][rookNewCol] = board[fromRow][rookCol];
+            board[fromRow][rookNewCol].setHasMoved(true);
+            board[fromRow][rookCol] = null;
         }
+        if (Position.movePromotion(move) != 0) {
+            piece = newPiece(Position.movePromotion(move), piece.color);
+        }
+        piece.setHasMoved(true);
+        board[toRow][toCol] = piece;
+        board[fromRow][fromCol] = null;
+        return undo;
+    }
+
+    private static void revert(Piece[][] board, int move, int undo) {
+        int fromRow = Position.row(Position.moveFrom(move));
+        int fromCol = Position.col(Position.moveFrom(move));
+        int toRow = Position.row(Position.moveTo(move));
+        int toCol = Position.col(Position.moveTo(move));
 
-        board[move.startRow][move.startCol] = piece;
-        board[move.endRow][move.endCol] = null;
+        Piece piece = board[toRow][toCol];
+        if (Position.movePromotion(move) != 0) piece = new Pawn(piece.color);
+        piece.setHasMoved((undo & PIECE_MOVED) != 0);
+        board[fromRow][fromCol] = piece;
+        board[toRow][toCol] = null;
+        if ((move & Position.CASTLE) != 0) {
+            int rookCol = toCol > fromCol ? 7 : 0;
+            int rookNewCol = toCol > fromCol ? 5 : 3;
+            board[fromRow][rookCol] = board[fromRow][rookNewCol];
+            board[fromRow][rookCol].setHasMoved(false); // Only an unmoved rook can castle
+            board[fromRow][rookNewCol] = null;
+        }
+        int captured = (undo & CAPTURED_MASK) - 1;
+        if (captured != Position.EMPTY) {
+            Piece restored = newPiece(Position.typeOf(captured),
+                    Position.colorOf(captured) == Position.WHITE ? PieceColor.WHITE : PieceColor.BLACK);
+            restored.setHasMoved((undo & CAPTURED_MOVED) != 0);
+            board[(move & Position.EN_PASSANT) != 0 ? fromRow : toRow][toCol] = restored;
+        }
     }
 
-    private Piece[][] cloneBoard(Piece[][] original) {
-        Piece[][] copy = new Piece[8][8];
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (original[i][j] != null) {
-                    if (original[i][j] instanceof Pawn) {
-                        copy[i][j] = new Pawn(original[i][j].color);
-                    } else if (original[i][j] instanceof Rook) {
-                        copy[i][j] = new Rook(original[i][j].color);
-                    } else if (original[i][j] instanceof Knight) {
-                        copy[i][j] = new Knight(original[i][j].color);
-                    } else if (original[i][j] instanceof Bishop) {
-                        copy[i][j] = new Bishop(original[i][j].color);
-                    } else if (original[i][j] instanceof Queen) {
-                        copy[i][j] = new Queen(original[i][j].color);
-                    } else if (original[i][j] instanceof King) {
-                        copy[i][j] = new King(original[i][j].color);
-                    }
-                    copy[i][j].setHasMoved(original[i][j].hasMoved());
-                }
-            }
+    private static Piece newPiece(int type, PieceColor color) {
+        switch (type) {
+            case Position.PAWN: return new Pawn(color);
+            case Position.KNIGHT: return new Knight(color);
+            case Position.BISHOP: return new Bishop(color);
+            case Position.ROOK: return new Rook(color);
+            case Position.QUEEN: return new Queen(color);
+            default: return new King(color);
         }
-        return copy;
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class Knight extends Piece {
+    private static final int[][] DELTAS = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
+
     public Knight(PieceColor color) {
         super(color);
     }
@@ -9,9 +11,8 @@ public class Knight extends Piece {
     @Override
     public List<Move> getPossibleMoves(Piece[][] board, int row, int col, Move lastMove) {
         List<Move> moves = new ArrayList<>();
-        int[][] deltas = {{-2, -1}, {-2, 1}, {-1, -2}, {-1, 2}, {1, -2}, {1, 2}, {2, -1}, {2, 1}};
 
-        for (int[] delta : deltas) {
+        for (int[] delta : DELTAS) {
             int r = row + delta[0];
             int c = col + delta[1];
             if (r >= 0 && r < 8 && c >= 0 && c < 8 && (board[r][c] == null || board[r][c].color != this.color)) {
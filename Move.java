@@ -1,5 +1,6 @@
 public class Move {
     int startRow, startCol, endRow, endCol;
+    int promotion; // Piece type a pawn becomes (Position.QUEEN...), or 0 to ask the player
 
     public Move(int startRow, int startCol, int endRow, int endCol) {
         this.startRow = startRow;
@@ -7,4 +8,9 @@ public class Move {
         this.endRow = endRow;
         this.endCol = endCol;
     }
+
+    public Move(int startRow, int startCol, int endRow, int endCol, int promotion) {
+        this(startRow, startCol, endRow, endCol);
+        this.promotion = promotion;
+    }
 }
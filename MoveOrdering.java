@@ -0,0 +1,56 @@
+import java.util.Arrays;
+
+// Killer moves and the history table of one search thread. It is kept between searches so that quiet moves
+// that caused cutoffs on the previous move are still tried early; newSearch ages the history instead of
+// clearing it.
+public class MoveOrdering {
+    private static final int HISTORY_LIMIT = 1 << 16; // When an entry passes this, the whole table is halved
+
+    // Two quiet moves per ply that caused a beta cutoff, most recent first
+    private final int[][] killers = new int[Search.MAX_PLY + 1][2];
+    // Cutoff counts weighted by depth, indexed by side to move, then from * 64 + to
+    private final int[][] history = new int[2][64 * 64];
+
+    public void newSearch() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, 0);
+        }
+        age();
+    }
+
+    public void clear() {
+        for (int[] plyKillers : killers) {
+            Arrays.fill(plyKillers, 0);
+        }
+        for (int[] table : history) {
+            Arrays.fill(table, 0);
+        }
+    }
+
+    int killer(int ply, int slot) {
+        return killers[ply][slot];
+    }
+
+    int history(int color, int move) {
+        return history[color][Position.moveFrom(move) * 64 + Position.moveTo(move)];
+    }
+
+    // Records a quiet move that failed high
+    void cutoff(int color, int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int index = Position.moveFrom(move) * 64 + Position.moveTo(move);
+        history[color][index] += depth * depth;
+        if (history[color][index] > HISTORY_LIMIT) age();
+    }
+
+    private void age() {
+        for (int[] table : history) {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>= 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// Hands out the moves of one node best-first: the hash move, then captures and queen promotions by MVV-LVA
+// (most valuable victim, least valuable attacker), then the two killer moves, then the other quiet moves by
+// history score, and underpromotions last. Each call to next selects the best remaining move, so a node that
+// cuts off early never pays for ordering the whole list.
+final class MovePicker {
+    private static final int CAPTURE_SCORE = 1 << 25;
+    private static final int KILLER_SCORE = 1 << 24;
+    private static final int UNDERPROMOTION_SCORE = -1;
+
+    private final int[] moves = new int[Position.MAX_MOVES];
+    private final int[] scores = new int[Position.MAX_MOVES];
+    private int count;
+    private int index;
+    private int hashMove;
+
+    // Generates and scores the legal moves of the position; returns how many there are
+    int init(Position position, MoveOrdering ordering, int hashMove, int ply) {
+        count = position.generateMoves(moves);
+        index = 0;
+        this.hashMove = 0;
+        int us = position.getSideToMove();
+        int killer1 = ordering.killer(ply, 0);
+        int killer2 = ordering.killer(ply, 1);
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int promotion = Position.movePromotion(move);
+            if (move == hashMove) {
+                this.hashMove = move;
+                scores[i] = Integer.MIN_VALUE; // Already handed out before the selection starts
+            } else if (Position.isCapture(move) || promotion == Position.QUEEN) {
+                scores[i] = captureScore(position, move);
+            } else if (promotion != 0) {
+                scores[i] = UNDERPROMOTION_SCORE;
+            } else if (move == killer1) {
+                scores[i] = KILLER_SCORE + 1;
+            } else if (move == killer2) {
+                scores[i] = KILLER_SCORE;
+            } else {
+                scores[i] = ordering.history(us, move);
+            }
+        }
+        return count;
+    }
+
+    // Only captures and queen promotions, by MVV-LVA, for the quiescence search; returns how many there are
+    int initCaptures(Position position) {
+        int generated = position.generateMoves(moves);
+        count = 0;
+        index = 0;
+        hashMove = 0;
+        for (int i = 0; i < generated; i++) {
+            int move = moves[i];
+            if (Position.isCapture(move) || Position.movePromotion(move) == Position.QUEEN) {
+                moves[count] = move;
+                scores[count++] = captureScore(position, move);
+            }
+        }
+        return count;
+    }
+
+    // The next move to search, or 0 when all have been handed out
+    int next() {
+        if (hashMove != 0) {
+            int move = hashMove;
+            hashMove = 0;
+            return move;
+        }
+        while (index < count) {
+            int best = index;
+            for (int i = index + 1; i < count; i++) {
+                if (scores[i] > scores[best]) best = i;
+            }
+            int move = moves[best];
+            int score = scores[best];
+            moves[best] = moves[index];
+            scores[best] = scores[index];
+            index++;
+            if (score != Integer.MIN_VALUE) return move;
+        }
+        return 0;
+    }
+
+    private static int captureScore(Position position, int move) {
+        int victim = (move & Position.EN_PASSANT) != 0 ? Position.PAWN
+                : Position.isCapture(move) ? Position.typeOf(position.pieceAt(Position.moveTo(move))) : 0;
+        int attacker = Position.typeOf(position.pieceAt(Position.moveFrom(move)));
+        return CAPTURE_SCORE + 8 * (victim + Position.movePromotion(move)) + Position.KING - attacker;
+    }
+}
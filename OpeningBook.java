@@ -0,0 +1,106 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+// Opening book in the Polyglot file layout: 16-byte big-endian entries sorted by position key, each holding
+// the key (8 bytes), a move (2), a weight (2) and a learn value (4, unused). The file is memory-mapped and
+// binary-searched, so a lookup touches only a few pages and never reads the whole book.
+// Keys are Polyglot's (see PolyglotKeys), so standard .bin books can be used and books built with
+// BookBuilder work in other programs.
+public class OpeningBook {
+    static final int ENTRY_SIZE = 16;
+
+    private final MappedByteBuffer entries;
+    private final int count;
+    private final Random random;
+
+    public OpeningBook(Path file) throws IOException {
+        this(file, new Random());
+    }
+
+    public OpeningBook(Path file, Random random) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size % ENTRY_SIZE != 0 || size / ENTRY_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Not a book file: " + file);
+            }
+            entries = channel.map(FileChannel.MapMode.READ_ONLY, 0, size); // Stays valid after the channel closes
+            count = (int) (size / ENTRY_SIZE);
+        }
+        this.random = random;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // A book move for the position, picked at random in proportion to the weights, or 0 if the position
+    // is not in the book. Only legal moves are returned.
+    public int probe(Position position) {
+        long key = PolyglotKeys.key(position);
+        int first = lowerBound(key);
+        int total = 0;
+        int last = first;
+        while (last < count && keyAt(last) == key) {
+            total += weightAt(last);
+            last++;
+        }
+        if (total == 0) return 0;
+        int pick = random.nextInt(total);
+        for (int i = first; i < last; i++) {
+            pick -= weightAt(i);
+            if (pick < 0) return toLegalMove(position, moveAt(i));
+        }
+        return 0;
+    }
+
+    // First entry whose key is not below the given one, comparing keys as unsigned numbers like Polyglot
+    private int lowerBound(long key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return entries.getLong(index * ENTRY_SIZE);
+    }
+
+    private int moveAt(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 8) & 0xFFFF;
+    }
+
+    private int weightAt(int index) {
+        return entries.getShort(index * ENTRY_SIZE + 10) & 0xFFFF;
+    }
+
+    // Polyglot move: to square (bits 0-5), from square (6-11), promotion piece (12-14: 1 knight ... 4 queen).
+    // Squares are numbered a1 = 0 like ours, and castling is written as the king taking its own rook.
+    static int encode(int move) {
+        int from = Position.moveFrom(move);
+        int to = Position.moveTo(move);
+        if ((move & Position.CASTLE) != 0) {
+            to = to > from ? from + 3 : from - 4;
+        }
+        return to | (from << 6) | (Position.movePromotion(move) << 12);
+    }
+
+    private static int toLegalMove(Position position, int bookMove) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (encode(moves[i]) == bookMove) return moves[i];
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,39 @@
+// Prints time-to-depth, node rate and speedup of ChessAI for 1, 2, 4... threads up to the core count.
+// Usage: java ParallelSearchReport [depth] [max threads]
+public class ParallelSearchReport {
+    private static final String[] POSITIONS = {
+            "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+            "r1bqkb1r/pppp1ppp/2n2n2/4p3/2B1P3/5N2/PPPP1PPP/RNBQK2R w KQkq - 4 4",
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+    };
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int cores = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        System.out.printf("depth %d, up to %d threads on %d cores%n", depth, cores,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %-14s %10s %12s %12s %8s%n", "threads", "mode", "time ms", "nodes", "nodes/sec", "speedup");
+        for (boolean deterministic : new boolean[]{false, true}) {
+            double baseline = 0;
+            for (int threads = 1; threads <= cores; threads *= 2) {
+                ChessAI ai = new ChessAI(64);
+                ai.setThreads(threads);
+                ai.setDeterministic(deterministic);
+                ai.findBestMove(Position.fromFen(POSITIONS[0]), depth - 1, Long.MAX_VALUE); // Warm up the JIT
+                long nodes = 0;
+                long start = System.nanoTime();
+                for (String fen : POSITIONS) {
+                    ai.getTranspositionTable().clear();
+                    ai.findBestMove(Position.fromFen(fen), depth, Long.MAX_VALUE);
+                    nodes += ai.getNodes();
+                }
+                double millis = (System.nanoTime() - start) / 1e6;
+                if (threads == 1) baseline = millis;
+                System.out.printf("%-8d %-14s %10.0f %12d %12.0f %7.2fx%n", threads,
+                        deterministic ? "deterministic" : "lazy-smp", millis, nodes, nodes / (millis / 1000), baseline / millis);
+                ai.shutdown();
+            }
+        }
+    }
+}
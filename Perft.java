@@ -0,0 +1,78 @@
+// Move generator correctness check: counts leaf nodes of the legal move tree and compares them with
+// published reference counts.
+// Usage: java Perft                 runs the reference suite
+//        java Perft "<fen>" <depth> prints a divide (per root move counts) for one position
+public class Perft {
+    private static final Object[][] SUITE = {
+            {"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                    new long[]{20, 400, 8902, 197281, 4865609}},
+            {"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                    new long[]{48, 2039, 97862, 4085603}},
+            {"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+                    new long[]{14, 191, 2812, 43238, 674624}},
+            {"r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+                    new long[]{6, 264, 9467, 422333}},
+            {"rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+                    new long[]{44, 1486, 62379, 2103487}},
+            {"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+                    new long[]{46, 2079, 89890, 3894594}},
+    };
+
+    public static long perft(Position position, int depth) {
+        return perft(position, depth, new int[depth + 1][Position.MAX_MOVES]);
+    }
+
+    // moveStack[depth] is the move buffer for the node at that remaining depth
+    private static long perft(Position position, int depth, int[][] moveStack) {
+        int[] moves = moveStack[depth];
+        int count = position.generateMoves(moves);
+        if (depth == 1) return count; // Every generated move is legal, so the last ply is just a count
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            nodes += perft(position, depth - 1, moveStack);
+            position.unmakeMove(moves[i]);
+        }
+        return nodes;
+    }
+
+    public static long divide(Position position, int depth) {
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            position.makeMove(moves[i]);
+            long nodes = perft(position, depth - 1);
+            System.out.println(Position.moveToString(moves[i]) + ": " + nodes);
+            total += nodes;
+            position.unmakeMove(moves[i]);
+        }
+        System.out.println();
+        System.out.println("Nodes searched: " + total);
+        return total;
+    }
+
+    public static void main(String[] args) {
+        if (args.length >= 2) {
+            divide(Position.fromFen(args[0]), Integer.parseInt(args[1]));
+            return;
+        }
+        boolean ok = true;
+        for (Object[] test : SUITE) {
+            String fen = (String) test[0];
+            long[] expected = (long[]) test[1];
+            System.out.println(fen);
+            for (int depth = 1; depth <= expected.length; depth++) {
+                long start = System.nanoTime();
+                long nodes = perft(Position.fromFen(fen), depth);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                boolean pass = nodes == expected[depth - 1];
+                ok &= pass;
+                System.out.printf("  depth %d: %,12d %s (expected %,d, %.0f nodes/sec)%n", depth, nodes,
+                        pass ? "OK  " : "FAIL", expected[depth - 1], nodes / Math.max(seconds, 1e-9));
+            }
+        }
+        System.out.println(ok ? "All perft counts match." : "Perft mismatch!");
+        if (!ok) System.exit(1);
+    }
+}
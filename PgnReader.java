@@ -0,0 +1,243 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+// Reads games from PGN text one at a time: the tag pairs and the main line as SAN strings. Comments,
+// variations, move numbers and numeric annotation glyphs are skipped.
+public class PgnReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 256; // Games handed to a worker at a time by forEachGame
+
+    private final BufferedReader in;
+    private String pending; // Line read ahead that belongs to the next game
+
+    public PgnReader(BufferedReader in) {
+        this.in = in;
+    }
+
+    // Streams the file through a channel and fixed-size buffers, so files of any size are read in constant
+    // memory. PGN is 7-bit text by the standard; other bytes are read as ISO-8859-1.
+    public PgnReader(Path file) throws IOException {
+        this(new BufferedReader(Channels.newReader(FileChannel.open(file, StandardOpenOption.READ),
+                StandardCharsets.ISO_8859_1.newDecoder(), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    public static class Game {
+        public final Map<String, String> tags = new LinkedHashMap<>();
+        public final List<String> moves = new ArrayList<>();
+        public String result = "*";
+
+        // The starting position, from the FEN tag if the game has one
+        public Position startPosition() {
+            String fen = tags.get("FEN");
+            return Position.fromFen(fen != null ? fen : Position.START_FEN);
+        }
+
+        // The moves resolved against the move generator, as packed moves from the start position
+        public int[] resolveMoves() {
+            Position position = startPosition();
+            int[] packed = new int[moves.size()];
+            for (int ply = 0; ply < packed.length; ply++) {
+                packed[ply] = position.parseSan(moves.get(ply));
+                if (packed[ply] == 0) {
+                    throw new IllegalArgumentException("Illegal or ambiguous move " + moves.get(ply)
+                            + " at ply " + (ply + 1));
+                }
+                position.makeMove(packed[ply]);
+            }
+            return packed;
+        }
+    }
+
+    // Reads every game of the file and passes it to the handler with its resolved moves. With more than one
+    // thread this thread only splits the text into games; the others resolve the moves and call the handler,
+    // concurrently. A bounded queue keeps memory constant. Games that fail to resolve are skipped.
+    // Returns the number of games handled.
+    public static long forEachGame(Path file, int threads, BiConsumer<Game, int[]> handler)
+            throws IOException, InterruptedException {
+        try (PgnReader reader = new PgnReader(file)) {
+            if (threads <= 1) {
+                long handled = 0;
+                for (Game game = reader.next(); game != null; game = reader.next()) {
+                    if (resolveAndHandle(game, handler)) handled++;
+                }
+                return handled;
+            }
+            return reader.forEachGameParallel(threads, handler);
+        }
+    }
+
+    private long forEachGameParallel(int threads, BiConsumer<Game, int[]> handler)
+            throws IOException, InterruptedException {
+        BlockingQueue<List<Game>> queue = new ArrayBlockingQueue<>(threads * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] handled = new long[threads];
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (List<Game> batch = queue.take(); !batch.isEmpty(); batch = queue.take()) {
+                        for (Game game : batch) {
+                            if (resolveAndHandle(game, handler)) handled[worker]++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    queue.clear(); // Unblocks the reader, which then stops
+                }
+            }, "pgn-worker-" + t);
+            thread.setDaemon(true);
+            thread.start();
+            workers.add(thread);
+        }
+        try {
+            List<Game> batch = new ArrayList<>(BATCH_SIZE);
+            for (Game game = next(); game != null && failure.get() == null; game = next()) {
+                batch.add(game);
+                if (batch.size() == BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) queue.put(batch);
+        } finally {
+            for (int t = 0; t < threads; t++) {
+                if (failure.get() != null) queue.clear();
+                queue.put(List.of()); // One end marker per worker
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) throw (RuntimeException) error;
+        if (error instanceof Error) throw (Error) error;
+        long total = 0;
+        for (long count : handled) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static boolean resolveAndHandle(Game game, BiConsumer<Game, int[]> handler) {
+        int[] moves;
+        try {
+            moves = game.resolveMoves();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        handler.accept(game, moves);
+        return true;
+    }
+
+    // The next game, or null at the end of the input
+    public Game next() throws IOException {
+        Game game = new Game();
+        boolean started = false;
+        int commentDepth = 0; // Inside {...}
+        int variationDepth = 0; // Inside (...)
+        String line;
+        while ((line = pending != null ? pending : in.readLine()) != null) {
+            pending = null;
+            String trimmed = line.trim();
+            if (commentDepth == 0 && variationDepth == 0 && trimmed.startsWith("[")) {
+                if (started && !game.moves.isEmpty()) {
+                    pending = line; // Tags of the next game after one without a result
+                    return game;
+                }
+                started = true;
+                parseTag(trimmed, game);
+                continue;
+            }
+            if (trimmed.startsWith("%")) continue; // Escape line
+            int i = 0;
+            while (i < line.length()) {
+                char ch = line.charAt(i);
+                if (commentDepth > 0) {
+                    if (ch == '}') commentDepth--;
+                    i++;
+                } else if (ch == '{') {
+                    commentDepth++;
+                    i++;
+                } else if (ch == ';') {
+                    break; // Comment to the end of the line
+                } else if (ch == '(') {
+                    variationDepth++;
+                    i++;
+                } else if (ch == ')') {
+                    if (variationDepth > 0) variationDepth--;
+                    i++;
+                } else if (Character.isWhitespace(ch)) {
+                    i++;
+                } else {
+                    int end = i;
+                    while (end < line.length() && "{}();".indexOf(line.charAt(end)) < 0
+                            && !Character.isWhitespace(line.charAt(end))) {
+                        end++;
+                    }
+                    String token = line.substring(i, end);
+                    i = end;
+                    if (variationDepth > 0) continue;
+                    started = true;
+                    if (isResult(token)) {
+                        game.result = token;
+                        if (i < line.length()) pending = line.substring(i);
+                        return game;
+                    }
+                    addMoveToken(token, game);
+                }
+            }
+        }
+        return started ? game : null;
+    }
+
+    private static void parseTag(String line, Game game) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space < 0 || open < 0 || close <= open) return;
+        game.tags.put(line.substring(1, space),
+                line.substring(open + 1, close).replace("\\\"", "\"").replace("\\\\", "\\"));
+    }
+
+    // Strips a move number ("12." or "12...") in front of the move and skips annotation glyphs ("$1")
+    private static void addMoveToken(String token, Game game) {
+        if (token.startsWith("$")) return;
+        int start = 0;
+        while (start < token.length() && Character.isDigit(token.charAt(start))) {
+            start++;
+        }
+        if (start == token.length() || token.charAt(start) != '.') {
+            start = 0; // Not a move number, e.g. castling written as "0-0"
+        }
+        while (start < token.length() && token.charAt(start) == '.') {
+            start++;
+        }
+        if (start < token.length()) game.moves.add(token.substring(start));
+    }
+
+    private static boolean isResult(String token) {
+        return token.equals("1-0") || token.equals("0-1") || token.equals("1/2-1/2") || token.equals("*");
+    }
+}
@@ -0,0 +1,112 @@
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+// Writes games as PGN: the Seven Tag Roster first, then any other tags, then the moves in SAN wrapped below
+// 80 columns. Each game is written in one call, so several threads may share a writer.
+public class PgnWriter implements Closeable, Flushable {
+    private static final String[] SEVEN_TAG_ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+    private static final int LINE_LENGTH = 79;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Writer out;
+
+    public PgnWriter(Writer out) {
+        this.out = out;
+    }
+
+    // Creates or replaces the file, writing through a channel with a fixed-size buffer
+    public PgnWriter(Path file) throws IOException {
+        this(new BufferedWriter(Channels.newWriter(FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE),
+                StandardCharsets.ISO_8859_1.newEncoder(), BUFFER_SIZE), BUFFER_SIZE));
+    }
+
+    // Writes a game read by PgnReader; its moves must be legal
+    public void write(PgnReader.Game game) throws IOException {
+        write(game.tags, game.startPosition(), game.resolveMoves(), game.result);
+    }
+
+    // Writes a game given as packed moves played from the start position. Missing roster tags are written
+    // as "?"; the SetUp and FEN tags are added when the game does not start from the initial position.
+    public synchronized void write(Map<String, String> tags, Position start, int[] moves, String result)
+            throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (String name : SEVEN_TAG_ROSTER) {
+            String value = name.equals("Result") ? result : tags.getOrDefault(name, "?");
+            appendTag(text, name, value);
+        }
+        String fen = start.toFen();
+        boolean setUp = !fen.equals(Position.START_FEN);
+        if (setUp) {
+            appendTag(text, "SetUp", "1");
+            appendTag(text, "FEN", fen);
+        }
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            String name = tag.getKey();
+            if (isRosterTag(name) || (setUp && (name.equals("SetUp") || name.equals("FEN")))) continue;
+            appendTag(text, name, tag.getValue());
+        }
+        text.append('\n');
+
+        Position position = new Position(start);
+        int lineStart = text.length();
+        for (int ply = 0; ply < moves.length; ply++) {
+            String token = position.toSan(moves[ply]);
+            if (position.getSideToMove() == Position.WHITE) {
+                token = position.fullmoveNumber + ". " + token;
+            } else if (ply == 0) {
+                token = position.fullmoveNumber + "... " + token;
+            }
+            lineStart = appendToken(text, token, lineStart);
+            position.makeMove(moves[ply]);
+        }
+        appendToken(text, result, lineStart);
+        text.append("\n\n");
+        out.write(text.toString());
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // Adds a token after a space, or on a new line if it would not fit; returns where the current line starts
+    private static int appendToken(StringBuilder text, String token, int lineStart) {
+        if (text.length() > lineStart) {
+            if (text.length() - lineStart + 1 + token.length() > LINE_LENGTH) {
+                text.append('\n');
+                lineStart = text.length();
+            } else {
+                text.append(' ');
+            }
+        }
+        text.append(token);
+        return lineStart;
+    }
+
+    private static void appendTag(StringBuilder text, String name, String value) {
+        text.append('[').append(name).append(" \"")
+                .append(value.replace("\\", "\\\\").replace("\"", "\\\"")).append("\"]\n");
+    }
+
+    private static boolean isRosterTag(String name) {
+        for (String roster : SEVEN_TAG_ROSTER) {
+            if (roster.equals(name)) return true;
+        }
+        return false;
+    }
+}
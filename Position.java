@@ -0,0 +1,947 @@
+import java.util.Arrays;
+
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+    public static final int EMPTY = -1;
+
+    public static final int MAX_MOVES = 256;
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private static final int[] SEE_VALUES = {100, 300, 300, 500, 900, 20000}; // Indexed by piece type
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL; // b1, d1, ..., a2, c2, ...
+
+    // Packed move layout: from (bits 0-5), to (6-11), promotion piece type (12-14), flags (15-17)
+    public static final int CAPTURE = 1 << 15;
+    public static final int EN_PASSANT = 1 << 16;
+    public static final int CASTLE = 1 << 17;
+
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+
+    // Castling rights that survive a move touching the given square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASK[7] &= ~WHITE_KINGSIDE;
+        CASTLING_MASK[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASK[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_MASK[63] &= ~BLACK_KINGSIDE;
+        CASTLING_MASK[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+    }
+
+    // Squares are numbered a1 = 0 ... h8 = 63; row 0 of the GUI board is rank 8
+    final long[] pieces = new long[12];
+    final long[] colors = new long[2];
+    long occupied;
+    final int[] squares = new int[64];
+    int sideToMove = WHITE;
+    int castling;
+    int epSquare = -1;
+    int halfmoveClock; // Plies since the last capture or pawn move
+    int fullmoveNumber = 1;
+    long key;
+    // Evaluation sums kept up to date by put and remove: White-minus-Black midgame and endgame scores, and the phase
+    int mgScore;
+    int egScore;
+    int phase;
+    private final int[] seeGain = new int[64]; // Swap list for see, longer than any exchange can be
+    // Move list for parseSan, toSan, parseUci and hasLegalMove, allocated on first use and kept, so the search
+    // can test for legal moves without allocating
+    private int[] scratchMoves;
+
+    public Position() {
+        Arrays.fill(squares, EMPTY);
+    }
+
+    public Position(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, 12);
+        System.arraycopy(other.colors, 0, colors, 0, 2);
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        occupied = other.occupied;
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        key = other.key;
+        mgScore = other.mgScore;
+        egScore = other.egScore;
+        phase = other.phase;
+        // The moves made so far come along, so the copy still sees repetitions of earlier positions
+        undoStack = Arrays.copyOf(other.undoStack, other.undoStack.length);
+        keyStack = Arrays.copyOf(other.keyStack, other.keyStack.length);
+        ply = other.ply;
+    }
+
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    public static int colorOf(int piece) {
+        return piece < 6 ? WHITE : BLACK;
+    }
+
+    public static int typeOf(int piece) {
+        return piece < 6 ? piece : piece - 6;
+    }
+
+    public static int square(int row, int col) {
+        return (7 - row) * 8 + col;
+    }
+
+    public static int row(int sq) {
+        return 7 - (sq >>> 3);
+    }
+
+    public static int col(int sq) {
+        return sq & 7;
+    }
+
+    public static int move(int from, int to, int promotion) {
+        return from | (to << 6) | (promotion << 12);
+    }
+
+    public static int move(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    public static int moveFrom(int move) {
+        return move & 63;
+    }
+
+    public static int moveTo(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int movePromotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    public static boolean isCapture(int move) {
+        return (move & CAPTURE) != 0;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public int pieceAt(int sq) {
+        return squares[sq];
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    void put(int piece, int sq) {
+        long bit = 1L << sq;
+        pieces[piece] |= bit;
+        colors[colorOf(piece)] |= bit;
+        occupied |= bit;
+        squares[sq] = piece;
+        key ^= Zobrist.PIECES[piece][sq];
+        mgScore += Evaluation.MG[piece][sq];
+        egScore += Evaluation.EG[piece][sq];
+        phase += Evaluation.PHASE[typeOf(piece)];
+    }
+
+    void remove(int sq) {
+        int piece = squares[sq];
+        long bit = ~(1L << sq);
+        pieces[piece] &= bit;
+        colors[colorOf(piece)] &= bit;
+        occupied &= bit;
+        squares[sq] = EMPTY;
+        key ^= Zobrist.PIECES[piece][sq];
+        mgScore -= Evaluation.MG[piece][sq];
+        egScore -= Evaluation.EG[piece][sq];
+        phase -= Evaluation.PHASE[typeOf(piece)];
+    }
+
+    public static Position fromBoard(Piece[][] board, PieceColor sideToMove, Move lastMove) {
+        Position position = new Position();
+        for (int r = 0; r < 8; r++) {
+            for (int c = 0; c < 8; c++) {
+                if (board[r][c] != null) {
+                    position.put(piece(toColor(board[r][c].color), typeOf(board[r][c])), square(r, c));
+                }
+            }
+        }
+        position.sideToMove = toColor(sideToMove);
+        position.castling = castlingRights(board);
+        if (lastMove != null && board[lastMove.endRow][lastMove.endCol] instanceof Pawn
+                && Math.abs(lastMove.startRow - lastMove.endRow) == 2) {
+            position.setEnPassant(square((lastMove.startRow + lastMove.endRow) / 2, lastMove.endCol));
+        }
+        position.key ^= position.stateKey();
+        return position;
+    }
+
+    public static Position fromFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) throw new IllegalArgumentException("Invalid FEN: " + fen);
+        Position position = new Position();
+        int rank = 7;
+        int file = 0;
+        for (char ch : fields[0].toCharArray()) {
+            if (ch == '/') {
+                if (file != 8) throw new IllegalArgumentException("Invalid FEN, each rank needs eight squares: " + fen);
+                rank--;
+                file = 0;
+            } else if (ch >= '1' && ch <= '8') {
+                file += ch - '0';
+                if (file > 8) throw new IllegalArgumentException("Invalid FEN: " + fen);
+            } else {
+                int type = "pnbrqk".indexOf(Character.toLowerCase(ch));
+                if (type < 0 || rank < 0 || file > 7) throw new IllegalArgumentException("Invalid FEN: " + fen);
+                position.put(piece(Character.isUpperCase(ch) ? WHITE : BLACK, type), rank * 8 + file);
+                file++;
+            }
+        }
+        if (rank != 0) throw new IllegalArgumentException("Invalid FEN, it needs eight ranks: " + fen);
+        if (file != 8) throw new IllegalArgumentException("Invalid FEN, each rank needs eight squares: " + fen);
+        if (Long.bitCount(position.pieces[piece(WHITE, KING)]) != 1 || Long.bitCount(position.pieces[piece(BLACK, KING)]) != 1) {
+            throw new IllegalArgumentException("Invalid FEN, each side needs one king: " + fen);
+        }
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Invalid FEN side to move: " + fen);
+        }
+        position.sideToMove = fields[1].equals("b") ? BLACK : WHITE;
+        if (!fields[2].equals("-")) {
+            for (char ch : fields[2].toCharArray()) {
+                switch (ch) {
+                    case 'K': position.castling |= WHITE_KINGSIDE; break;
+                    case 'Q': position.castling |= WHITE_QUEENSIDE; break;
+                    case 'k': position.castling |= BLACK_KINGSIDE; break;
+                    case 'q': position.castling |= BLACK_QUEENSIDE; break;
+                    default: throw new IllegalArgumentException("Invalid FEN castling rights: " + fen);
+                }
+            }
+        }
+        // Rights whose king or rook is not on its square could not be used; castling would move a missing rook
+        for (int right = 0; right < 4; right++) {
+            int color = right >> 1;
+            int homeRank = color == WHITE ? 0 : 56;
+            int rookSquare = homeRank + ((right & 1) == 0 ? 7 : 0);
+            if (position.squares[homeRank + 4] != piece(color, KING) || position.squares[rookSquare] != piece(color, ROOK)) {
+                position.castling &= ~(1 << right);
+            }
+        }
+        if (!fields[3].equals("-")) {
+            String ep = fields[3];
+            int epRank = position.sideToMove == WHITE ? '6' : '3';
+            if (ep.length() != 2 || ep.charAt(0) < 'a' || ep.charAt(0) > 'h' || ep.charAt(1) != epRank) {
+                throw new IllegalArgumentException("Invalid FEN en passant square: " + fen);
+            }
+            int sq = (ep.charAt(1) - '1') * 8 + (ep.charAt(0) - 'a');
+            int pushed = sq + (position.sideToMove == WHITE ? -8 : 8); // The pawn that just moved two squares
+            if (position.squares[pushed] == piece(position.sideToMove ^ 1, PAWN)) position.setEnPassant(sq);
+        }
+        try {
+            if (fields.length > 4) position.halfmoveClock = Integer.parseInt(fields[4]);
+            if (fields.length > 5) position.fullmoveNumber = Math.max(1, Integer.parseInt(fields[5]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid FEN: " + fen);
+        }
+        // The undo record keeps the clock in its upper bits, which cannot hold a negative number
+        if (position.halfmoveClock < 0) throw new IllegalArgumentException("Invalid FEN halfmove clock: " + fen);
+        position.key ^= position.stateKey();
+        return position;
+    }
+
+    // Forsyth-Edwards Notation; the en passant square is only written when a capture there is possible
+    public String toFen() {
+        StringBuilder fen = new StringBuilder();
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int p = squares[rank * 8 + file];
+                if (p == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) fen.append(empty);
+                empty = 0;
+                char letter = "pnbrqk".charAt(typeOf(p));
+                fen.append(colorOf(p) == WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) fen.append(empty);
+            if (rank > 0) fen.append('/');
+        }
+        fen.append(sideToMove == WHITE ? " w " : " b ");
+        if (castling == 0) fen.append('-');
+        if ((castling & WHITE_KINGSIDE) != 0) fen.append('K');
+        if ((castling & WHITE_QUEENSIDE) != 0) fen.append('Q');
+        if ((castling & BLACK_KINGSIDE) != 0) fen.append('k');
+        if ((castling & BLACK_QUEENSIDE) != 0) fen.append('q');
+        fen.append(' ').append(epSquare >= 0 ? squareName(epSquare) : "-");
+        fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return fen.toString();
+    }
+
+    // Only record an en-passant square that an enemy pawn could actually capture on, so that
+    // otherwise identical positions share a hash key
+    private void setEnPassant(int sq) {
+        int capturer = sideToMove;
+        epSquare = (Bitboards.PAWN_ATTACKS[capturer ^ 1][sq] & pieces[piece(capturer, PAWN)]) != 0 ? sq : -1;
+    }
+
+    // Key contribution of everything except piece placement
+    private long stateKey() {
+        long k = Zobrist.CASTLING[castling];
+        if (epSquare >= 0) k ^= Zobrist.EN_PASSANT_FILE[epSquare & 7];
+        if (sideToMove == BLACK) k ^= Zobrist.SIDE;
+        return k;
+    }
+
+    public Piece[][] toBoard() {
+        Piece[][] board = new Piece[8][8];
+        for (int sq = 0; sq < 64; sq++) {
+            int p = squares[sq];
+            if (p == EMPTY) continue;
+            PieceColor color = colorOf(p) == WHITE ? PieceColor.WHITE : PieceColor.BLACK;
+            Piece piece;
+            switch (typeOf(p)) {
+                case PAWN: piece = new Pawn(color); break;
+                case KNIGHT: piece = new Knight(color); break;
+                case BISHOP: piece = new Bishop(color); break;
+                case ROOK: piece = new Rook(color); break;
+                case QUEEN: piece = new Queen(color); break;
+                default: piece = new King(color); break;
+            }
+            piece.setHasMoved(hasMoved(p, sq));
+            board[row(sq)][col(sq)] = piece;
+        }
+        return board;
+    }
+
+    private boolean hasMoved(int p, int sq) {
+        int color = colorOf(p);
+        int home = color == WHITE ? 0 : 56;
+        switch (typeOf(p)) {
+            case KING:
+                return sq != home + 4 || (castling & (color == WHITE ? 3 : 12)) == 0;
+            case ROOK:
+                if (sq == home + 7) return (castling & (color == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE)) == 0;
+                if (sq == home) return (castling & (color == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE)) == 0;
+                return true;
+            case PAWN:
+                return Bitboards.rank(sq) != (color == WHITE ? 1 : 6);
+            default:
+                return false;
+        }
+    }
+
+    static int toColor(PieceColor color) {
+        return color == PieceColor.WHITE ? WHITE : BLACK;
+    }
+
+    static int typeOf(Piece piece) {
+        if (piece instanceof Pawn) return PAWN;
+        if (piece instanceof Knight) return KNIGHT;
+        if (piece instanceof Bishop) return BISHOP;
+        if (piece instanceof Rook) return ROOK;
+        if (piece instanceof Queen) return QUEEN;
+        return KING;
+    }
+
+    private static int castlingRights(Piece[][] board) {
+        int rights = 0;
+        if (unmovedKing(board, 7, PieceColor.WHITE)) {
+            if (unmovedRook(board, 7, 7, PieceColor.WHITE)) rights |= WHITE_KINGSIDE;
+            if (unmovedRook(board, 7, 0, PieceColor.WHITE)) rights |= WHITE_QUEENSIDE;
+        }
+        if (unmovedKing(board, 0, PieceColor.BLACK)) {
+            if (unmovedRook(board, 0, 7, PieceColor.BLACK)) rights |= BLACK_KINGSIDE;
+            if (unmovedRook(board, 0, 0, PieceColor.BLACK)) rights |= BLACK_QUEENSIDE;
+        }
+        return rights;
+    }
+
+    private static boolean unmovedKing(Piece[][] board, int row, PieceColor color) {
+        Piece king = board[row][4];
+        return king instanceof King && king.color == color && !king.hasMoved();
+    }
+
+    private static boolean unmovedRook(Piece[][] board, int row, int col, PieceColor color) {
+        Piece rook = board[row][col];
+        return rook instanceof Rook && rook.color == color && !rook.hasMoved();
+    }
+
+    public int kingSquare(int color) {
+        return Long.numberOfTrailingZeros(pieces[piece(color, KING)]);
+    }
+
+    public long attackersTo(int sq, long occ) {
+        return (Bitboards.PAWN_ATTACKS[BLACK][sq] & pieces[piece(WHITE, PAWN)])
+                | (Bitboards.PAWN_ATTACKS[WHITE][sq] & pieces[piece(BLACK, PAWN)])
+                | (Bitboards.KNIGHT_ATTACKS[sq] & (pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)]))
+                | (Bitboards.KING_ATTACKS[sq] & (pieces[piece(WHITE, KING)] | pieces[piece(BLACK, KING)]))
+                | (Bitboards.bishopAttacks(sq, occ) & (pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)]
+                        | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)]))
+                | (Bitboards.rookAttacks(sq, occ) & (pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)]
+                        | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)]));
+    }
+
+    public boolean isSquareAttacked(int sq, int byColor) {
+        return isSquareAttacked(sq, byColor, occupied);
+    }
+
+    // Same, with a different occupancy for the sliding pieces (e.g. with the king lifted off its square)
+    private boolean isSquareAttacked(int sq, int byColor, long occ) {
+        int base = byColor * 6;
+        if ((Bitboards.PAWN_ATTACKS[byColor ^ 1][sq] & pieces[base + PAWN]) != 0) return true;
+        if ((Bitboards.KNIGHT_ATTACKS[sq] & pieces[base + KNIGHT]) != 0) return true;
+        if ((Bitboards.KING_ATTACKS[sq] & pieces[base + KING]) != 0) return true;
+        long queens = pieces[base + QUEEN];
+        if ((Bitboards.bishopAttacks(sq, occ) & (pieces[base + BISHOP] | queens)) != 0) return true;
+        return (Bitboards.rookAttacks(sq, occ) & (pieces[base + ROOK] | queens)) != 0;
+    }
+
+    public boolean isInCheck(int color) {
+        long king = pieces[piece(color, KING)];
+        return king != 0 && isSquareAttacked(Long.numberOfTrailingZeros(king), color ^ 1);
+    }
+
+    // Static exchange evaluation: the material the side to move wins or loses on the target square if both
+    // sides keep recapturing with their least valuable attacker and may stop whenever that is better for them.
+    // Sliders behind a capturing piece join in as it leaves; pins are ignored.
+    public int see(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        long occ = occupied;
+        int victim = squares[to];
+        if ((move & EN_PASSANT) != 0) {
+            victim = piece(sideToMove ^ 1, PAWN);
+            occ ^= 1L << (to + (sideToMove == WHITE ? -8 : 8));
+        }
+        int[] gain = seeGain;
+        int depth = 0;
+        gain[0] = victim == EMPTY ? 0 : SEE_VALUES[typeOf(victim)];
+        long diagonal = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long straight = pieces[piece(WHITE, ROOK)] | pieces[piece(BLACK, ROOK)]
+                | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        long attackers = attackersTo(to, occ);
+        int side = sideToMove;
+        int attacker = typeOf(squares[from]);
+        long fromBit = 1L << from;
+        while (true) {
+            depth++;
+            // Score if the piece now standing on the square is taken next
+            gain[depth] = SEE_VALUES[attacker] - gain[depth - 1];
+            if (Math.max(-gain[depth - 1], gain[depth]) < 0) break; // Neither side can gain by going on
+            occ ^= fromBit;
+            attackers = (attackers | (Bitboards.bishopAttacks(to, occ) & diagonal)
+                    | (Bitboards.rookAttacks(to, occ) & straight)) & occ;
+            side ^= 1;
+            long ours = attackers & colors[side];
+            if (ours == 0) break;
+            for (attacker = PAWN; attacker <= KING; attacker++) {
+                long candidates = ours & pieces[piece(side, attacker)];
+                if (candidates != 0) {
+                    fromBit = candidates & -candidates;
+                    break;
+                }
+            }
+        }
+        while (--depth > 0) {
+            gain[depth - 1] = -Math.max(-gain[depth - 1], gain[depth]);
+        }
+        return gain[0];
+    }
+
+    // Legal moves for the side to move. Checkers and pinned pieces are found once up front: in check, the
+    // other pieces may only capture the checker or block, and a pinned piece may only move along its pin line.
+    public int generateMoves(int[] moves) {
+        int us = sideToMove;
+        int them = us ^ 1;
+        int king = kingSquare(us);
+        long enemies = colors[them];
+        long empty = ~occupied;
+        int count = 0;
+
+        // The king steps to squares not attacked once it has left its square, so it cannot retreat along a check ray
+        long kingTargets = Bitboards.KING_ATTACKS[king] & ~colors[us];
+        long withoutKing = occupied ^ (1L << king);
+        while (kingTargets != 0) {
+            int to = Long.numberOfTrailingZeros(kingTargets);
+            kingTargets &= kingTargets - 1;
+            if (!isSquareAttacked(to, them, withoutKing)) {
+                moves[count++] = (enemies & (1L << to)) != 0 ? move(king, to, 0, CAPTURE) : move(king, to, 0);
+            }
+        }
+
+        long checkers = attackersTo(king, occupied) & enemies;
+        if ((checkers & (checkers - 1)) != 0) return count; // Double check: only the king can move
+
+        long checkMask = -1L;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            checkMask = checkers | Bitboards.BETWEEN[king][checker];
+        }
+        long pinned = pinnedPieces(us, king);
+
+        count = generatePawnMoves(moves, count, king, checkMask, pinned);
+
+        long knights = pieces[piece(us, KNIGHT)] & ~pinned; // A pinned knight can never move
+        while (knights != 0) {
+            int from = Long.numberOfTrailingZeros(knights);
+            knights &= knights - 1;
+            count = addMoves(moves, count, from, Bitboards.KNIGHT_ATTACKS[from] & checkMask, enemies, empty);
+        }
+        long bishops = pieces[piece(us, BISHOP)] | pieces[piece(us, QUEEN)];
+        while (bishops != 0) {
+            int from = Long.numberOfTrailingZeros(bishops);
+            bishops &= bishops - 1;
+            long targets = Bitboards.bishopAttacks(from, occupied) & checkMask;
+            if ((pinned & (1L << from)) != 0) targets &= Bitboards.LINE[king][from];
+            count = addMoves(moves, count, from, targets, enemies, empty);
+        }
+        long rooks = pieces[piece(us, ROOK)] | pieces[piece(us, QUEEN)];
+        while (rooks != 0) {
+            int from = Long.numberOfTrailingZeros(rooks);
+            rooks &= rooks - 1;
+            long targets = Bitboards.rookAttacks(from, occupied) & checkMask;
+            if ((pinned & (1L << from)) != 0) targets &= Bitboards.LINE[king][from];
+            count = addMoves(moves, count, from, targets, enemies, empty);
+        }
+
+        // Castling: not out of check, path empty and the king not passing through or landing on an attacked square
+        int home = us == WHITE ? 0 : 56;
+        int kingside = us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        if ((castling & (kingside | queenside)) != 0 && checkers == 0) {
+            if ((castling & kingside) != 0 && (occupied & (0x60L << home)) == 0
+                    && !isSquareAttacked(home + 5, them) && !isSquareAttacked(home + 6, them)) {
+                moves[count++] = move(home + 4, home + 6, 0, CASTLE);
+            }
+            if ((castling & queenside) != 0 && (occupied & (0x0EL << home)) == 0
+                    && !isSquareAttacked(home + 3, them) && !isSquareAttacked(home + 2, them)) {
+                moves[count++] = move(home + 4, home + 2, 0, CASTLE);
+            }
+        }
+        return count;
+    }
+
+    // Our pieces that are the only piece between the king and an enemy slider on the same line
+    private long pinnedPieces(int us, int king) {
+        int them = us ^ 1;
+        long queens = pieces[piece(them, QUEEN)];
+        long snipers = (Bitboards.rookAttacks(king, 0L) & (pieces[piece(them, ROOK)] | queens))
+                | (Bitboards.bishopAttacks(king, 0L) & (pieces[piece(them, BISHOP)] | queens));
+        long pinned = 0L;
+        while (snipers != 0) {
+            int sniper = Long.numberOfTrailingZeros(snipers);
+            snipers &= snipers - 1;
+            long blockers = Bitboards.BETWEEN[king][sniper] & occupied;
+            if (blockers != 0 && (blockers & (blockers - 1)) == 0) {
+                pinned |= blockers & colors[us];
+            }
+        }
+        return pinned;
+    }
+
+    private int generatePawnMoves(int[] moves, int count, int king, long checkMask, long pinned) {
+        int us = sideToMove;
+        long pawns = pieces[piece(us, PAWN)];
+        long enemies = colors[us ^ 1];
+        int forward = us == WHITE ? 8 : -8;
+        int startRank = us == WHITE ? 1 : 6;
+        int lastRank = us == WHITE ? 7 : 0;
+        while (pawns != 0) {
+            int from = Long.numberOfTrailingZeros(pawns);
+            pawns &= pawns - 1;
+            long allowed = (pinned & (1L << from)) != 0 ? checkMask & Bitboards.LINE[king][from] : checkMask;
+            int to = from + forward;
+            if ((occupied & (1L << to)) == 0) {
+                if ((allowed & (1L << to)) != 0) {
+                    count = addPawnMove(moves, count, from, to, lastRank, 0);
+                }
+                int twoStep = to + forward;
+                if (Bitboards.rank(from) == startRank && (occupied & (1L << twoStep)) == 0
+                        && (allowed & (1L << twoStep)) != 0) {
+                    moves[count++] = move(from, twoStep, 0);
+                }
+            }
+            long captures = Bitboards.PAWN_ATTACKS[us][from] & enemies & allowed;
+            while (captures != 0) {
+                int target = Long.numberOfTrailingZeros(captures);
+                captures &= captures - 1;
+                count = addPawnMove(moves, count, from, target, lastRank, CAPTURE);
+            }
+            if (epSquare >= 0 && (Bitboards.PAWN_ATTACKS[us][from] & (1L << epSquare)) != 0
+                    && isLegalEnPassant(from, king, checkMask)) {
+                moves[count++] = move(from, epSquare, 0, CAPTURE | EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    // En passant removes two pieces from the same rank, so pins are checked by replaying the capture on the
+    // occupancy and looking for a slider that now sees the king
+    private boolean isLegalEnPassant(int from, int king, long checkMask) {
+        int us = sideToMove;
+        int them = us ^ 1;
+        int captured = epSquare + (us == WHITE ? -8 : 8);
+        // In check, the capture must remove the checking pawn or block on the en-passant square
+        if ((checkMask & ((1L << captured) | (1L << epSquare))) == 0) return false;
+        long occ = (occupied ^ (1L << from) ^ (1L << captured)) | (1L << epSquare);
+        long queens = pieces[piece(them, QUEEN)];
+        return (Bitboards.rookAttacks(king, occ) & (pieces[piece(them, ROOK)] | queens)) == 0
+                && (Bitboards.bishopAttacks(king, occ) & (pieces[piece(them, BISHOP)] | queens)) == 0;
+    }
+
+    private static int addPawnMove(int[] moves, int count, int from, int to, int lastRank, int flags) {
+        if (Bitboards.rank(to) == lastRank) {
+            moves[count++] = move(from, to, QUEEN, flags);
+            moves[count++] = move(from, to, ROOK, flags);
+            moves[count++] = move(from, to, BISHOP, flags);
+            moves[count++] = move(from, to, KNIGHT, flags);
+        } else {
+            moves[count++] = move(from, to, 0, flags);
+        }
+        return count;
+    }
+
+    private static int addMoves(int[] moves, int count, int from, long attacks, long enemies, long empty) {
+        long captures = attacks & enemies;
+        while (captures != 0) {
+            moves[count++] = move(from, Long.numberOfTrailingZeros(captures), 0, CAPTURE);
+            captures &= captures - 1;
+        }
+        long quiets = attacks & empty;
+        while (quiets != 0) {
+            moves[count++] = move(from, Long.numberOfTrailingZeros(quiets), 0);
+            quiets &= quiets - 1;
+        }
+        return count;
+    }
+
+    // Undo record, one int per ply: captured piece + 1 (bits 0-3), castling rights (4-7), en-passant square + 1 (8-14),
+    // halfmove clock (15 and up).
+    // keyStack holds the hash key from before each move.
+    private int[] undoStack = new int[64];
+    private long[] keyStack = new long[64];
+    private int ply;
+
+    public void makeMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int promotion = movePromotion(move);
+        int moving = squares[from];
+        int type = typeOf(moving);
+        int us = sideToMove;
+        int captureSquare = (move & EN_PASSANT) != 0 ? to + (us == WHITE ? -8 : 8) : to;
+        int captured = squares[captureSquare];
+
+        if (ply == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, ply * 2);
+            keyStack = Arrays.copyOf(keyStack, ply * 2);
+        }
+        keyStack[ply] = key;
+        undoStack[ply++] = (captured + 1) | (castling << 4) | ((epSquare + 1) << 8) | (halfmoveClock << 15);
+        key ^= stateKey();
+
+        if (captured != EMPTY) {
+            remove(captureSquare);
+        }
+        remove(from);
+        put(promotion != 0 ? piece(us, promotion) : moving, to);
+
+        if ((move & CASTLE) != 0) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookFrom];
+            remove(rookFrom);
+            put(rook, rookTo);
+        }
+
+        castling &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        halfmoveClock = type == PAWN || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (us == BLACK) fullmoveNumber++;
+        sideToMove = us ^ 1;
+        epSquare = -1;
+        if (type == PAWN && Math.abs(to - from) == 16) {
+            setEnPassant((from + to) >>> 1);
+        }
+        key ^= stateKey();
+    }
+
+    public void unmakeMove(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int undo = undoStack[--ply];
+        int captured = (undo & 15) - 1;
+        castling = (undo >>> 4) & 15;
+        epSquare = ((undo >>> 8) & 127) - 1;
+        halfmoveClock = undo >>> 15;
+        int us = sideToMove ^ 1;
+        sideToMove = us;
+        if (us == BLACK) fullmoveNumber--;
+
+        int moved = movePromotion(move) != 0 ? piece(us, PAWN) : squares[to];
+        remove(to);
+        put(moved, from);
+
+        if ((move & CASTLE) != 0) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            int rookTo = to > from ? from + 1 : from - 1;
+            int rook = squares[rookTo];
+            remove(rookTo);
+            put(rook, rookFrom);
+        }
+        if (captured != EMPTY) {
+            put(captured, (move & EN_PASSANT) != 0 ? to + (us == WHITE ? -8 : 8) : to);
+        }
+        key = keyStack[ply];
+    }
+
+    // True if the position occurred at least the given number of times before with the same side to move.
+    // Positions before the last capture or pawn move cannot repeat, so only the last halfmoveClock plies made
+    // on this position (or the one it was copied from) are scanned, every second one.
+    public boolean isRepetition(int times) {
+        int found = 0;
+        for (int i = ply - 4; i >= Math.max(0, ply - halfmoveClock); i -= 2) {
+            if (keyStack[i] == key && ++found >= times) return true;
+        }
+        return false;
+    }
+
+    // Fifty moves by each side without a capture or pawn move, unless the last of them mated
+    public boolean isFiftyMoveDraw() {
+        return halfmoveClock >= 100 && (!isInCheck(sideToMove) || hasLegalMove());
+    }
+
+    // Neither side can mate: kings with at most one minor piece, or with bishops all on squares of one color
+    public boolean hasInsufficientMaterial() {
+        long heavy = pieces[piece(WHITE, PAWN)] | pieces[piece(BLACK, PAWN)] | pieces[piece(WHITE, ROOK)]
+                | pieces[piece(BLACK, ROOK)] | pieces[piece(WHITE, QUEEN)] | pieces[piece(BLACK, QUEEN)];
+        if (heavy != 0) return false;
+        long knights = pieces[piece(WHITE, KNIGHT)] | pieces[piece(BLACK, KNIGHT)];
+        long bishops = pieces[piece(WHITE, BISHOP)] | pieces[piece(BLACK, BISHOP)];
+        if (Long.bitCount(knights | bishops) <= 1) return true;
+        return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
+    }
+
+    // Drawn by the rules: threefold repetition, the fifty-move rule or insufficient material
+    public boolean isDraw() {
+        return isRepetition(2) || isFiftyMoveDraw() || hasInsufficientMaterial();
+    }
+
+    // True if the side to move has at least one legal move
+    public boolean hasLegalMove() {
+        return hasLegalMove(scratchMoves());
+    }
+
+    // Same, generating into the caller's buffer so the search does not allocate
+    public boolean hasLegalMove(int[] moves) {
+        return generateMoves(moves) > 0;
+    }
+
+    // Packs a GUI move, filling in the flags from this position; pawns reaching the last rank become queens
+    // unless the move names another piece
+    public int toPackedMove(Move move) {
+        int from = square(move.startRow, move.startCol);
+        int to = square(move.endRow, move.endCol);
+        int promotion = 0;
+        if (typeOf(squares[from]) == PAWN && (to >= 56 || to < 8)) {
+            promotion = move.promotion != 0 ? move.promotion : QUEEN;
+        }
+        return withFlags(move(from, to, promotion, 0));
+    }
+
+    // The move given by its squares and promotion only, with the capture, en-passant and castling flags it
+    // has in this position
+    public int withFlags(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int type = typeOf(squares[from]);
+        int flags = squares[to] != EMPTY ? CAPTURE : 0;
+        if (type == PAWN && squares[to] == EMPTY && (from & 7) != (to & 7)) {
+            flags |= CAPTURE | EN_PASSANT;
+        } else if (type == KING && Math.abs(to - from) == 2) {
+            flags |= CASTLE;
+        }
+        return move(from, to, movePromotion(move), flags);
+    }
+
+    // Long algebraic (UCI) notation, e.g. e2e4 or e7e8q
+    public static String moveToString(int move) {
+        String text = squareName(moveFrom(move)) + squareName(moveTo(move));
+        int promotion = movePromotion(move);
+        return promotion == 0 ? text : text + "pnbrqk".charAt(promotion);
+    }
+
+    // The legal move written in standard algebraic notation (e.g. "Nbd7", "exd5", "O-O", "e8=Q+"), or 0 if
+    // there is no such move or the notation fits more than one. Check marks and annotations are ignored.
+    public int parseSan(String san) {
+        int end = san.length();
+        while (end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        String text = san.substring(0, end);
+        if (text.startsWith("O-O") || text.startsWith("0-0")) {
+            boolean queenside = text.length() >= 5;
+            int[] moves = scratchMoves();
+            int count = generateMoves(moves);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if ((move & CASTLE) != 0 && (moveTo(move) < moveFrom(move)) == queenside) return move;
+            }
+            return 0;
+        }
+        int promotion = 0;
+        int promotionAt = text.indexOf('=');
+        if (promotionAt < 0 && text.length() > 2 && "NBRQ".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            promotionAt = text.length() - 1; // Promotion written without '=', as in "e8Q"
+        }
+        if (promotionAt >= 0) {
+            promotion = "PNBRQ".indexOf(Character.toUpperCase(text.charAt(text.length() - 1)));
+            if (promotion <= PAWN) return 0;
+            text = text.substring(0, promotionAt);
+        }
+        if (text.length() < 2) return 0;
+        int type = "NBRQK".indexOf(text.charAt(0)) + 1; // Pawn moves have no letter
+        int to = squareIndex(text.charAt(text.length() - 2), text.charAt(text.length() - 1));
+        if (to < 0 || (squares[to] != EMPTY && colorOf(squares[to]) == sideToMove)) return 0;
+        int file = -1, rank = -1; // Origin hint
+        for (int i = type == PAWN ? 0 : 1; i < text.length() - 2; i++) {
+            char ch = text.charAt(i);
+            if (ch >= 'a' && ch <= 'h' && (file < 0 || file == ch - 'a')) {
+                file = ch - 'a';
+            } else if (ch >= '1' && ch <= '8' && (rank < 0 || rank == ch - '1')) {
+                rank = ch - '1';
+            } else if (ch != 'x') {
+                return 0;
+            }
+        }
+        boolean lastRank = to >= 56 || to < 8;
+        if ((type == PAWN && lastRank) != (promotion != 0)) return 0;
+
+        // Only the pieces of the type that reach the square are tried, instead of generating every move
+        long origins = origins(type, to);
+        int found = 0;
+        while (origins != 0) {
+            int from = Long.numberOfTrailingZeros(origins);
+            origins &= origins - 1;
+            if ((file >= 0 && (from & 7) != file) || (rank >= 0 && (from >>> 3) != rank)) continue;
+            int flags = squares[to] != EMPTY ? CAPTURE : 0;
+            if (type == PAWN && to == epSquare && (from & 7) != (to & 7)) flags = CAPTURE | EN_PASSANT;
+            int move = move(from, to, promotion, flags);
+            if (!isLegal(move)) continue;
+            if (found != 0) return 0;
+            found = move;
+        }
+        return found;
+    }
+
+    // Standard algebraic notation of a legal move, with "+" or "#" after a check or mate
+    public String toSan(int move) {
+        int from = moveFrom(move);
+        int to = moveTo(move);
+        int type = typeOf(squares[from]);
+        StringBuilder san = new StringBuilder();
+        if ((move & CASTLE) != 0) {
+            san.append(to > from ? "O-O" : "O-O-O");
+        } else {
+            if (type == PAWN) {
+                if (isCapture(move)) san.append((char) ('a' + (from & 7)));
+            } else {
+                san.append("PNBRQK".charAt(type));
+                // Name the origin file, else rank, else both, if another piece of the type can also go there
+                long others = origins(type, to) & ~(1L << from);
+                boolean ambiguous = false, sameFile = false, sameRank = false;
+                while (others != 0) {
+                    int other = Long.numberOfTrailingZeros(others);
+                    others &= others - 1;
+                    if (!isLegal(move(other, to, 0, move & CAPTURE))) continue;
+                    ambiguous = true;
+                    sameFile |= (other & 7) == (from & 7);
+                    sameRank |= (other >>> 3) == (from >>> 3);
+                }
+                if (ambiguous && (!sameFile || sameRank)) san.append((char) ('a' + (from & 7)));
+                if (ambiguous && sameFile) san.append((char) ('1' + (from >>> 3)));
+            }
+            if (isCapture(move)) san.append('x');
+            san.append(squareName(to));
+            if (movePromotion(move) != 0) san.append('=').append("PNBRQK".charAt(movePromotion(move)));
+        }
+        makeMove(move);
+        if (isInCheck(sideToMove)) san.append(hasLegalMove() ? '+' : '#');
+        unmakeMove(move);
+        return san.toString();
+    }
+
+    // The legal move written in long algebraic (UCI) notation, e.g. "e2e4" or "e7e8q", or 0 if there is none
+    public int parseUci(String text) {
+        int[] moves = scratchMoves();
+        int count = generateMoves(moves);
+        for (int i = 0; i < count; i++) {
+            if (moveToString(moves[i]).equals(text)) return moves[i];
+        }
+        return 0;
+    }
+
+    private int[] scratchMoves() {
+        if (scratchMoves == null) scratchMoves = new int[MAX_MOVES];
+        return scratchMoves;
+    }
+
+    // The side to move's pieces of the type that could move to the square, ignoring pins and checks.
+    // Pawns count from where they push or capture, depending on whether the square is empty.
+    private long origins(int type, int to) {
+        int us = sideToMove;
+        long own = pieces[piece(us, type)];
+        switch (type) {
+            case PAWN:
+                if (squares[to] != EMPTY || to == epSquare) return Bitboards.PAWN_ATTACKS[us ^ 1][to] & own;
+                int behind = us == WHITE ? to - 8 : to + 8;
+                if (behind < 0 || behind >= 64) return 0;
+                if (squares[behind] == piece(us, PAWN)) return 1L << behind;
+                int twoBehind = us == WHITE ? behind - 8 : behind + 8;
+                boolean fourthRank = Bitboards.rank(to) == (us == WHITE ? 3 : 4);
+                return fourthRank && squares[behind] == EMPTY ? own & (1L << twoBehind) : 0;
+            case KNIGHT: return Bitboards.KNIGHT_ATTACKS[to] & own;
+            case BISHOP: return Bitboards.bishopAttacks(to, occupied) & own;
+            case ROOK: return Bitboards.rookAttacks(to, occupied) & own;
+            case QUEEN: return (Bitboards.bishopAttacks(to, occupied) | Bitboards.rookAttacks(to, occupied)) & own;
+            default: return Bitboards.KING_ATTACKS[to] & own;
+        }
+    }
+
+    // True if the move, pseudo-legal for the side to move, does not leave its king in check
+    private boolean isLegal(int move) {
+        int us = sideToMove;
+        makeMove(move);
+        boolean legal = !isInCheck(us);
+        unmakeMove(move);
+        return legal;
+    }
+
+    private static int squareIndex(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') return -1;
+        return (rank - '1') * 8 + (file - 'a');
+    }
+
+    public static String squareName(int sq) {
+        return "" + (char) ('a' + (sq & 7)) + (char) ('1' + (sq >>> 3));
+    }
+
+    public Move toMove(int move) {
+        return new Move(row(moveFrom(move)), col(moveFrom(move)), row(moveTo(move)), col(moveTo(move)),
+                movePromotion(move));
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One search thread's state: its own Position, node counters and stop flag checks.
+// Threads searching the same root share only the transposition table and the stop flag. The counters are
+// plain fields of the thread's own Search, so counting costs no synchronization; ChessAI adds them up once
+// the search is over.
+public class Search {
+    static final int CHECKMATE_SCORE = 1000000;
+    static final int STALEMATE_SCORE = 0;
+    static final int INFINITY = CHECKMATE_SCORE + 1;
+    static final int MAX_PLY = 128;
+    private static final int TIME_CHECK_INTERVAL = 1024; // Nodes between clock reads
+
+    private final TranspositionTable table;
+    private final Position position;
+    private final AtomicBoolean stop;
+    private final AtomicLong deadline; // System.nanoTime() to stop at; may be moved while searching
+    private final boolean mainThread;
+    private final boolean tableCutoffs;
+    private final MoveOrdering ordering;
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY + 1]; // One per ply
+    private SearchListener listener;
+    private Tablebases tablebases;
+    private long nodeLimit = Long.MAX_VALUE;
+    private int rootDepth;
+    private boolean stopped;
+    private int rootScore;
+    private long nodes;
+    private long quiescenceNodes;
+    private long cutoffs; // Beta cutoffs in the full-width search
+    private long firstMoveCutoffs; // Those caused by the first move searched
+    private long probes;
+    private long hits;
+    private final long[] iterationNanos = new long[MAX_PLY + 1]; // Time each completed depth of iterate took
+
+    public Search(TranspositionTable table, Position position, MoveOrdering ordering, AtomicBoolean stop,
+                  AtomicLong deadline, boolean mainThread, boolean tableCutoffs) {
+        this.table = table;
+        this.position = position;
+        this.ordering = ordering;
+        this.stop = stop;
+        this.deadline = deadline;
+        this.mainThread = mainThread;
+        this.tableCutoffs = tableCutoffs;
+        for (int ply = 0; ply <= MAX_PLY; ply++) {
+            pickers[ply] = new MovePicker();
+        }
+    }
+
+    public void setListener(SearchListener listener) {
+        this.listener = listener;
+    }
+
+    public void setTablebases(Tablebases tablebases) {
+        this.tablebases = tablebases;
+    }
+
+    // Nodes this thread may search before it stops as if the time had run out
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    // Nanoseconds per depth completed by iterate, 0 for depths it did not complete
+    public long[] getIterationNanos() {
+        return iterationNanos;
+    }
+
+    public int getRootScore() {
+        return rootScore;
+    }
+
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    // Searches startDepth, startDepth + 1... and returns the best move of the last completed depth
+    public int iterate(int startDepth, int maxDepth) {
+        int bestMove = 0;
+        for (int depth = startDepth; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            int move = searchRoot(depth);
+            if (stopped) break; // The unfinished iteration is thrown away
+            iterationNanos[depth] = System.nanoTime() - start;
+            bestMove = move;
+            if (listener != null) listener.depthCompleted(depth, rootScore, nodes);
+            if (move == 0 || System.nanoTime() >= deadline.get() || stop.get()) break;
+            if (Math.abs(rootScore) > CHECKMATE_SCORE - MAX_PLY) break; // Forced mate found
+        }
+        return bestMove;
+    }
+
+    private int searchRoot(int depth) {
+        rootDepth = depth;
+        MovePicker picker = pickers[0];
+        picker.init(position, ordering, TranspositionTable.move(probe(position.getKey())), 0);
+
+        int alpha = -INFINITY;
+        int bestMove = 0;
+        for (int move = picker.next(); move != 0; move = picker.next()) {
+            position.makeMove(move);
+            int score = -minimax(depth - 1, 1, -INFINITY, -alpha);
+            position.unmakeMove(move);
+            if (stopped) return bestMove;
+            if (bestMove == 0 || score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        if (bestMove != 0) {
+            table.store(position.getKey(), bestMove, depth, TranspositionTable.EXACT, toTableScore(alpha, 0));
+        }
+        rootScore = alpha;
+        return bestMove;
+    }
+
+    // Exact score of one legal root move, searched with a full window so it does not depend on other moves
+    public int scoreRootMove(int move, int depth) {
+        rootDepth = depth;
+        position.makeMove(move);
+        int score = -minimax(depth - 1, 1, -INFINITY, INFINITY);
+        position.unmakeMove(move);
+        return score;
+    }
+
+    // Negamax alpha-beta: scores are always from the point of view of the side to move
+    private int minimax(int depth, int ply, int alpha, int beta) {
+        // A position repeated once in the game or the search line is scored as a draw at once: whatever made
+        // repeating good can be repeated again. The rule draws end the line too.
+        if (ply > 0 && (position.isRepetition(1) || position.isFiftyMoveDraw() || position.hasInsufficientMaterial())) {
+            return STALEMATE_SCORE;
+        }
+        if (tablebases != null && ply > 0) {
+            int value = tablebases.probe(position);
+            if (value != Tablebases.NOT_FOUND) return tablebaseScore(value, ply);
+        }
+        if (depth == 0 || ply >= MAX_PLY) return quiesce(ply, alpha, beta);
+        if (countNode()) return 0;
+
+        long key = position.getKey();
+        long entry = probe(key);
+        if (tableCutoffs && entry != 0 && TranspositionTable.depth(entry) >= depth) {
+            int score = fromTableScore(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.EXACT
+                    || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                    || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                return score;
+            }
+        }
+
+        MovePicker picker = pickers[ply];
+        if (picker.init(position, ordering, TranspositionTable.move(entry), ply) == 0) return gameOverScore(ply);
+
+        int originalAlpha = alpha;
+        int bestScore = -INFINITY;
+        int bestMove = 0;
+        int searched = 0;
+        for (int move = picker.next(); move != 0; move = picker.next()) {
+            position.makeMove(move);
+            int score = -minimax(depth - 1, ply + 1, -beta, -alpha);
+            position.unmakeMove(move);
+            if (stopped) return 0;
+            searched++;
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+                if (score > alpha) alpha = score;
+                if (alpha >= beta) { // Cutoff
+                    cutoffs++;
+                    if (searched == 1) firstMoveCutoffs++;
+                    if (!Position.isCapture(move) && Position.movePromotion(move) == 0) {
+                        ordering.cutoff(position.getSideToMove(), move, depth, ply);
+                    }
+                    break;
+                }
+            }
+        }
+        int bound = bestScore <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : bestScore >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(key, bestMove, depth, bound, toTableScore(bestScore, ply));
+        return bestScore;
+    }
+
+    // Searches captures and queen promotions until the position is quiet, so the evaluation is never taken in
+    // the middle of an exchange. The side to move may stand pat on the static evaluation instead of capturing,
+    // except in check, where every evasion is searched. Captures that lose material by static exchange are
+    // skipped. Scores are exact only inside the window; scoreRootMove gets exact root scores by searching each
+    // move with the full (-INFINITY, INFINITY) window.
+    private int quiesce(int ply, int alpha, int beta) {
+        quiescenceNodes++;
+        if (countNode()) return 0;
+        if (ply >= MAX_PLY) return Evaluation.evaluate(position);
+
+        boolean inCheck = position.isInCheck(position.getSideToMove());
+        int bestScore = -INFINITY;
+        if (!inCheck) {
+            bestScore = Evaluation.evaluate(position);
+            if (bestScore >= beta) return bestScore;
+            if (bestScore > alpha) alpha = bestScore;
+        }
+
+        MovePicker picker = pickers[ply];
+        if (inCheck) {
+            if (picker.init(position, ordering, 0, ply) == 0) return gameOverScore(ply);
+        } else {
+            picker.initCaptures(position);
+        }
+        for (int move = picker.next(); move != 0; move = picker.next()) {
+            if (!inCheck && Position.movePromotion(move) == 0 && position.see(move) < 0) continue;
+            position.makeMove(move);
+            int score = -quiesce(ply + 1, -beta, -alpha);
+            position.unmakeMove(move);
+            if (stopped) return 0;
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) alpha = score;
+                if (alpha >= beta) break;
+            }
+        }
+        return bestScore;
+    }
+
+    // Counts a node and reads the clock (and the node limit) every TIME_CHECK_INTERVAL nodes; true once the search has to stop.
+    // The main thread always completes depth 1, so there is a move to play however small the budget.
+    private boolean countNode() {
+        if (++nodes % TIME_CHECK_INTERVAL == 0 && (rootDepth > 1 || !mainThread)
+                && (stop.get() || System.nanoTime() >= deadline.get() || nodes >= nodeLimit)) {
+            stopped = true;
+        }
+        return stopped;
+    }
+
+    private long probe(long key) {
+        probes++;
+        long entry = table.probe(key);
+        if (entry != 0) hits++;
+        return entry;
+    }
+
+    // A tablebase distance to mate as a search score; draws score like stalemate
+    private static int tablebaseScore(int value, int ply) {
+        if (value > 0) return CHECKMATE_SCORE - ply - value;
+        if (value < 0) return -CHECKMATE_SCORE + ply - value - 1;
+        return STALEMATE_SCORE;
+    }
+
+    // Score for a side to move with no legal moves; nearer mates score higher
+    private int gameOverScore(int ply) {
+        if (!position.isInCheck(position.getSideToMove())) return STALEMATE_SCORE;
+        return -CHECKMATE_SCORE + ply;
+    }
+
+    // Mate scores are stored relative to the node so they stay valid when reached at another ply
+    private static int toTableScore(int score, int ply) {
+        if (score > CHECKMATE_SCORE - MAX_PLY) return score + ply;
+        if (score < -CHECKMATE_SCORE + MAX_PLY) return score - ply;
+        return score;
+    }
+
+    private static int fromTableScore(int score, int ply) {
+        if (score > CHECKMATE_SCORE - MAX_PLY) return score - ply;
+        if (score < -CHECKMATE_SCORE + MAX_PLY) return score + ply;
+        return score;
+    }
+}
@@ -0,0 +1,5 @@
+// Progress reports from a running search. Called on the search thread after each completed depth, so
+// GUI listeners have to hand the values over to their own thread.
+public interface SearchListener {
+    void depthCompleted(int depth, int score, long nodes);
+}
@@ -0,0 +1,131 @@
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+// Totals of every search in the process, published as the JMX MBean chess:type=SearchMetrics for monitoring
+// (jconsole, or any JMX-to-metrics bridge). Search threads never touch it: ChessAI records each search's
+// SearchStatistics once it is over, so the lock is taken once per move.
+public final class SearchMetrics implements SearchMetricsMBean {
+    static final String OBJECT_NAME = "chess:type=SearchMetrics";
+
+    private static volatile SearchMetrics instance;
+
+    private long searches;
+    private long nanos;
+    private long nodes;
+    private long quiescenceNodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long probes;
+    private long hits;
+    private SearchStatistics last;
+
+    private SearchMetrics() {
+    }
+
+    // The process-wide instance, registered with the platform MBean server on first use
+    public static SearchMetrics getInstance() {
+        SearchMetrics metrics = instance;
+        if (metrics != null) return metrics;
+        synchronized (SearchMetrics.class) {
+            if (instance == null) {
+                metrics = new SearchMetrics();
+                try {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+                } catch (InstanceAlreadyExistsException e) {
+                    // Registered by another class loader; this one's searches are still counted here
+                } catch (JMException e) {
+                    throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+                }
+                instance = metrics;
+            }
+            return instance;
+        }
+    }
+
+    public synchronized void record(SearchStatistics statistics) {
+        searches++;
+        nanos += statistics.getNanos();
+        nodes += statistics.getNodes();
+        quiescenceNodes += statistics.getQuiescenceNodes();
+        cutoffs += statistics.getCutoffs();
+        firstMoveCutoffs += statistics.getFirstMoveCutoffs();
+        probes += statistics.getProbes();
+        hits += statistics.getHits();
+        last = statistics;
+    }
+
+    @Override
+    public synchronized long getSearches() {
+        return searches;
+    }
+
+    @Override
+    public synchronized long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public synchronized long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    @Override
+    public synchronized double getNodesPerSecond() {
+        return nanos == 0 ? 0.0 : nodes * 1e9 / nanos;
+    }
+
+    @Override
+    public synchronized double getCutoffRate() {
+        return SearchStatistics.ratio(cutoffs, nodes - quiescenceNodes);
+    }
+
+    @Override
+    public synchronized double getFirstMoveCutoffRate() {
+        return SearchStatistics.ratio(firstMoveCutoffs, cutoffs);
+    }
+
+    @Override
+    public synchronized double getHashHitRate() {
+        return SearchStatistics.ratio(hits, probes);
+    }
+
+    @Override
+    public synchronized double getLastNodesPerSecond() {
+        return last == null ? 0.0 : last.getNodesPerSecond();
+    }
+
+    @Override
+    public synchronized int getLastDepth() {
+        return last == null ? 0 : last.getDepth();
+    }
+
+    @Override
+    public synchronized double[] getLastIterationMillis() {
+        int depth = getLastDepth();
+        double[] millis = new double[depth];
+        for (int d = 1; d <= depth; d++) {
+            millis[d - 1] = last.getIterationNanos(d) / 1e6;
+        }
+        return millis;
+    }
+
+    @Override
+    public synchronized String getLastSearch() {
+        return last == null ? "" : last.toString();
+    }
+
+    @Override
+    public synchronized void reset() {
+        searches = 0;
+        nanos = 0;
+        nodes = 0;
+        quiescenceNodes = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+        probes = 0;
+        hits = 0;
+        last = null;
+    }
+}
@@ -0,0 +1,27 @@
+// Search metrics published over JMX; see SearchMetrics. Rates are over every search since the last reset,
+// the Last attributes describe the most recent search.
+public interface SearchMetricsMBean {
+    long getSearches();
+
+    long getNodes();
+
+    long getQuiescenceNodes();
+
+    double getNodesPerSecond();
+
+    double getCutoffRate();
+
+    double getFirstMoveCutoffRate();
+
+    double getHashHitRate();
+
+    double getLastNodesPerSecond();
+
+    int getLastDepth();
+
+    double[] getLastIterationMillis();
+
+    String getLastSearch();
+
+    void reset();
+}
@@ -0,0 +1,122 @@
+import java.util.List;
+import java.util.Locale;
+
+// What one search did, summed over its threads: nodes (and how many were quiescence nodes), beta cutoffs
+// and how many the first move searched caused, which shows how well moves are ordered, transposition table
+// hits and the time each depth took. toString gives it as one line of key=value pairs for logs.
+public final class SearchStatistics {
+    private final int threads;
+    private final int bestMove;
+    private final long nanos;
+    private final long[] iterationNanos; // Per depth; the search completed the depths with a time
+    private long nodes;
+    private long quiescenceNodes;
+    private long cutoffs;
+    private long firstMoveCutoffs;
+    private long probes;
+    private long hits;
+
+    SearchStatistics(List<Search> searches, int threads, int bestMove, long nanos, long[] iterationNanos) {
+        this.threads = threads;
+        this.bestMove = bestMove;
+        this.nanos = nanos;
+        this.iterationNanos = iterationNanos;
+        for (Search search : searches) {
+            nodes += search.getNodes();
+            quiescenceNodes += search.getQuiescenceNodes();
+            cutoffs += search.getCutoffs();
+            firstMoveCutoffs += search.getFirstMoveCutoffs();
+            probes += search.getProbes();
+            hits += search.getHits();
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    // The packed move found, 0 if there was none
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getQuiescenceNodes() {
+        return quiescenceNodes;
+    }
+
+    public long getCutoffs() {
+        return cutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    // The deepest depth completed
+    public int getDepth() {
+        for (int depth = iterationNanos.length - 1; depth > 0; depth--) {
+            if (iterationNanos[depth] != 0) return depth;
+        }
+        return 0;
+    }
+
+    // Nanoseconds the depth took, 0 if it was not completed
+    public long getIterationNanos(int depth) {
+        return depth < iterationNanos.length ? iterationNanos[depth] : 0;
+    }
+
+    public double getNodesPerSecond() {
+        return nanos == 0 ? 0.0 : nodes * 1e9 / nanos;
+    }
+
+    // Share of full-width nodes that failed high
+    public double getCutoffRate() {
+        return ratio(cutoffs, nodes - quiescenceNodes);
+    }
+
+    // Share of cutoffs caused by the first move searched; near 1 when moves are well ordered
+    public double getFirstMoveCutoffRate() {
+        return ratio(firstMoveCutoffs, cutoffs);
+    }
+
+    public double getHashHitRate() {
+        return ratio(hits, probes);
+    }
+
+    static double ratio(long part, long whole) {
+        return whole <= 0 ? 0.0 : (double) part / whole;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder();
+        line.append(String.format(Locale.ROOT,
+                "move=%s depth=%d time_ms=%.1f nodes=%d nps=%.0f qnodes=%d cutoff_rate=%.4f first_move_cutoff_rate=%.4f"
+                        + " hash_hit_rate=%.4f threads=%d iteration_ms=",
+                bestMove == 0 ? "none" : Position.moveToString(bestMove), getDepth(), nanos / 1e6, nodes,
+                getNodesPerSecond(), quiescenceNodes, getCutoffRate(), getFirstMoveCutoffRate(), getHashHitRate(),
+                threads));
+        int depth = getDepth();
+        for (int d = 1; d <= depth; d++) {
+            if (d > 1) line.append(',');
+            line.append(String.format(Locale.ROOT, "%.1f", iterationNanos[d] / 1e6));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Plays batches of AI-against-AI games without a window or clock threads. A fixed pool of workers each owns
+// one ChessAI (its own table and move ordering) and takes game numbers from a shared counter; finished games
+// are appended to a PGN file as they complete. The first plies of every game are random, seeded by the game
+// number, so the games differ and a batch can be replayed.
+// Usage: java SelfPlay [-games N] [-workers N] [-movetime ms | -nodes N | -depth N] [-hash MB] [-random plies]
+//                      [-maxplies N] [-seed N] [-book file] [-tablebases dir] <pgn file>
+public class SelfPlay {
+    private static final String NAME = "ChessInJava";
+    private static final int MAX_DEPTH = 64;
+
+    private int games = 100;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private long moveTime = 100;
+    private long nodeLimit = Long.MAX_VALUE;
+    private int depth = MAX_DEPTH;
+    private int hashMegabytes = 8;
+    private int randomPlies = 6;
+    private int maxPlies = 400; // Longer games are adjudicated as draws
+    private long seed = 1;
+    private OpeningBook book;
+    private Tablebases tablebases;
+
+    private final AtomicInteger nextGame = new AtomicInteger();
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger whiteWins = new AtomicInteger();
+    private final AtomicInteger blackWins = new AtomicInteger();
+    private final AtomicInteger draws = new AtomicInteger();
+    private final AtomicLong totalPlies = new AtomicLong();
+    private final AtomicLong totalNodes = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong(); // Summed over workers
+    private final String date = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy.MM.dd"));
+    private long startNanos;
+
+    public void run(Path pgn) throws IOException, InterruptedException {
+        startNanos = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try (PgnWriter out = new PgnWriter(pgn)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < workers; i++) {
+                futures.add(pool.submit(() -> {
+                    work(out);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    throw new IOException("Self-play worker failed", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report();
+    }
+
+    private void work(PgnWriter out) throws IOException {
+        ChessAI ai = new ChessAI(hashMegabytes);
+        ai.setOpeningBook(book);
+        ai.setTablebases(tablebases);
+        ai.setNodeLimit(nodeLimit);
+        try {
+            for (int game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+                ai.newGame();
+                play(ai, game, out);
+                int done = finished.incrementAndGet();
+                if (done % Math.max(1, games / 20) == 0 && done < games) report();
+            }
+        } finally {
+            ai.shutdown();
+        }
+    }
+
+    // Plays one game and writes it to the PGN file
+    private void play(ChessAI ai, int game, PgnWriter out) throws IOException {
+        Random random = new Random(seed * 1_000_003L + game);
+        Position start = Position.fromFen(Position.START_FEN);
+        Position position = new Position(start);
+        int[] moves = new int[Position.MAX_MOVES];
+        int[] played = new int[maxPlies];
+        String result;
+        String termination = "normal";
+        int ply = 0;
+        while (true) {
+            int count = position.generateMoves(moves);
+            if (count == 0) {
+                boolean mated = position.isInCheck(position.getSideToMove());
+                result = !mated ? "1/2-1/2" : position.getSideToMove() == Position.WHITE ? "0-1" : "1-0";
+                break;
+            }
+            if (ply >= maxPlies || position.isDraw()) {
+                result = "1/2-1/2";
+                if (ply >= maxPlies) termination = "adjudication";
+                break;
+            }
+            int move;
+            if (ply < randomPlies) {
+                move = moves[random.nextInt(count)];
+            } else {
+                move = ai.bookMove(position);
+                if (move == 0) {
+                    long searchStart = System.nanoTime();
+                    move = ai.findBestMove(position, depth, moveTime);
+                    searchNanos.addAndGet(System.nanoTime() - searchStart);
+                    totalNodes.addAndGet(ai.getNodes());
+                }
+            }
+            played[ply++] = move;
+            position.makeMove(move);
+        }
+
+        switch (result) {
+            case "1-0": whiteWins.incrementAndGet(); break;
+            case "0-1": blackWins.incrementAndGet(); break;
+            default: draws.incrementAndGet(); break;
+        }
+        totalPlies.addAndGet(ply);
+
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", "Self-play");
+        tags.put("Date", date);
+        tags.put("Round", Integer.toString(game + 1));
+        tags.put("White", NAME);
+        tags.put("Black", NAME);
+        tags.put("Termination", termination);
+        out.write(tags, start, Arrays.copyOf(played, ply), result);
+        out.flush();
+    }
+
+    private void report() {
+        int done = finished.get();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double searchSeconds = searchNanos.get() / 1e9;
+        System.out.printf("%d games in %.1f s: %.0f games/hour, %.0f nodes/s per worker, %.1f plies/game, "
+                        + "White %d, Black %d, draws %d%n",
+                done, seconds, done * 3600 / Math.max(seconds, 1e-9),
+                searchSeconds > 0 ? totalNodes.get() / searchSeconds : 0.0,
+                done > 0 ? (double) totalPlies.get() / done : 0.0,
+                whiteWins.get(), blackWins.get(), draws.get());
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SelfPlay selfPlay = new SelfPlay();
+        int i = 0;
+        try {
+            for (; i < args.length - 1 && args[i].startsWith("-"); i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "-games": selfPlay.games = Integer.parseInt(value); break;
+                    case "-workers": selfPlay.workers = Integer.parseInt(value); break;
+                    case "-movetime": selfPlay.moveTime = Long.parseLong(value); break;
+                    case "-nodes":
+                        selfPlay.nodeLimit = Long.parseLong(value);
+                        selfPlay.moveTime = Long.MAX_VALUE;
+                        break;
+                    case "-depth":
+                        selfPlay.depth = Integer.parseInt(value);
+                        selfPlay.moveTime = Long.MAX_VALUE;
+                        break;
+                    case "-hash": selfPlay.hashMegabytes = Integer.parseInt(value); break;
+                    case "-random": selfPlay.randomPlies = Integer.parseInt(value); break;
+                    case "-maxplies": selfPlay.maxPlies = Integer.parseInt(value); break;
+                    case "-seed": selfPlay.seed = Long.parseLong(value); break;
+                    case "-book": selfPlay.book = new OpeningBook(Paths.get(value)); break;
+                    case "-tablebases": selfPlay.tablebases = new Tablebases(Paths.get(value)); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            i = args.length; // Print the usage
+        }
+        if (i != args.length - 1 || selfPlay.workers < 1) {
+            System.out.println("Usage: java SelfPlay [-games N] [-workers N] [-movetime ms | -nodes N | -depth N]"
+                    + " [-hash MB] [-random plies] [-maxplies N] [-seed N] [-book file] [-tablebases dir] <pgn file>");
+            System.exit(1);
+        }
+        selfPlay.run(Paths.get(args[i]));
+    }
+}
@@ -0,0 +1,156 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Distance to mate for every position of one pawnless set of pieces, e.g. "KQKR" (White king and queen
+// against Black king and rook). Castling rights are assumed to be gone.
+//
+// File layout: a 16-byte header (magic, piece count, piece codes) followed by one signed byte per index.
+// A value v > 0 means the side to move mates in v plies, v < 0 that it is mated in -v - 1 plies, and 0 a draw
+// (or an index that is not a legal position).
+//
+// Index: the board is turned (one of 8 symmetries) so the White king stands in the a1-d1-d4 triangle,
+// 10 squares, and the other pieces follow at 6 bits each, then the side to move. Where several symmetries
+// qualify, and for interchangeable pieces, the smallest index is used, so each position has one index.
+public class Tablebase {
+    static final int MAGIC = 0x43544231; // "CTB1"
+    static final int HEADER_SIZE = 16;
+    static final int MAX_PIECES = 4;
+
+    private static final int[] TRIANGLE = new int[64];
+    private static final int[] TRIANGLE_SQUARES = {0, 1, 2, 3, 9, 10, 11, 18, 19, 27};
+    private static final int[] STRENGTH = {1, 3, 3, 5, 9, 0}; // Orders the two sides when naming a table
+    // Square and turned-square buffers for probe, one pair per thread, so probing from the search allocates nothing
+    private static final ThreadLocal<int[][]> PROBE_BUFFERS = ThreadLocal.withInitial(() -> new int[2][MAX_PIECES]);
+
+    static {
+        Arrays.fill(TRIANGLE, -1);
+        for (int i = 0; i < TRIANGLE_SQUARES.length; i++) {
+            TRIANGLE[TRIANGLE_SQUARES[i]] = i;
+        }
+    }
+
+    final String name;
+    final int[] pieces; // Piece codes in index order: White king, other White pieces, Black king, other Black pieces
+    private final ByteBuffer data;
+
+    Tablebase(String name, ByteBuffer data) throws IOException {
+        this.name = name;
+        this.pieces = parsePieces(name);
+        this.data = data;
+        if (data.capacity() != HEADER_SIZE + size(pieces.length) || data.getInt(0) != MAGIC
+                || data.get(4) != pieces.length) {
+            throw new IOException("Not a tablebase for " + name);
+        }
+        for (int i = 0; i < pieces.length; i++) {
+            if (data.get(5 + i) != pieces[i]) throw new IOException("Not a tablebase for " + name);
+        }
+    }
+
+    // Value of the position, which must have this table's pieces (with colours exchanged if swapped)
+    int probe(Position position, boolean swapped) {
+        int[][] buffers = PROBE_BUFFERS.get();
+        int[] squares = buffers[0];
+        int i = 0;
+        while (i < pieces.length) {
+            int code = pieces[i];
+            long bits = position.pieces[swapped ? swapColor(code) : code];
+            while (i < pieces.length && pieces[i] == code) {
+                int sq = Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                squares[i++] = swapped ? sq ^ 56 : sq;
+            }
+        }
+        int side = swapped ? position.getSideToMove() ^ 1 : position.getSideToMove();
+        return data.get(HEADER_SIZE + index(pieces, squares, buffers[1], side));
+    }
+
+    static int size(int pieceCount) {
+        return TRIANGLE_SQUARES.length * (1 << (6 * (pieceCount - 1))) * 2;
+    }
+
+    // Index of a position given the squares of the pieces, in the same order as the piece codes
+    static int index(int[] pieces, int[] squares, int side) {
+        return index(pieces, squares, new int[pieces.length], side);
+    }
+
+    // Same, turning the squares in the caller's buffer; only the first pieces.length squares are read
+    private static int index(int[] pieces, int[] squares, int[] turned, int side) {
+        int best = Integer.MAX_VALUE;
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            if (TRIANGLE[transform(symmetry, squares[0])] < 0) continue;
+            for (int i = 0; i < pieces.length; i++) {
+                turned[i] = transform(symmetry, squares[i]);
+            }
+            // Interchangeable pieces are listed in ascending square order
+            for (int i = 1; i < pieces.length; i++) {
+                for (int j = i; j > 0 && pieces[j] == pieces[j - 1] && turned[j] < turned[j - 1]; j--) {
+                    int tmp = turned[j];
+                    turned[j] = turned[j - 1];
+                    turned[j - 1] = tmp;
+                }
+            }
+            int index = TRIANGLE[turned[0]];
+            for (int i = 1; i < pieces.length; i++) {
+                index = index * 64 + turned[i];
+            }
+            best = Math.min(best, index * 2 + side);
+        }
+        return best;
+    }
+
+    // Inverse of index, without the symmetry: fills in the squares and returns the side to move
+    static int decode(int index, int[] squares) {
+        int side = index & 1;
+        index >>>= 1;
+        for (int i = squares.length - 1; i > 0; i--) {
+            squares[i] = index & 63;
+            index >>>= 6;
+        }
+        squares[0] = TRIANGLE_SQUARES[index];
+        return side;
+    }
+
+    // Bit 0 mirrors the files, bit 1 the ranks, bit 2 swaps files and ranks
+    private static int transform(int symmetry, int sq) {
+        if ((symmetry & 4) != 0) sq = (sq >>> 3) | ((sq & 7) << 3);
+        if ((symmetry & 1) != 0) sq ^= 7;
+        if ((symmetry & 2) != 0) sq ^= 56;
+        return sq;
+    }
+
+    static int swapColor(int piece) {
+        return piece < 6 ? piece + 6 : piece - 6;
+    }
+
+    // "KQKR" -> White king, White queen, Black king, Black rook
+    static int[] parsePieces(String name) {
+        int split = name.indexOf('K', 1);
+        if (!name.startsWith("K") || split < 0 || name.length() > MAX_PIECES) {
+            throw new IllegalArgumentException("Not a pawnless material set: " + name);
+        }
+        int[] pieces = new int[name.length()];
+        for (int i = 0; i < name.length(); i++) {
+            int type = "PNBRQK".indexOf(name.charAt(i));
+            if (type <= Position.PAWN || (type == Position.KING && i != 0 && i != split)) {
+                throw new IllegalArgumentException("Not a pawnless material set: " + name);
+            }
+            pieces[i] = Position.piece(i < split ? Position.WHITE : Position.BLACK, type);
+        }
+        return pieces;
+    }
+
+    // Tables are named with the stronger side as White; the other order is probed with colours exchanged
+    static boolean isSwapped(String white, String black) {
+        int difference = strength(white) - strength(black);
+        return difference < 0 || (difference == 0 && white.compareTo(black) > 0);
+    }
+
+    private static int strength(String side) {
+        int total = 0;
+        for (char ch : side.toCharArray()) {
+            total += STRENGTH["PNBRQK".indexOf(ch)];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,258 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+// Builds Tablebase files by retrograde analysis. Mates are found first; then, one ply at a time, every
+// position that can move into a lost position is won, and a position whose moves all lead to won positions
+// is lost. Captures lead into smaller tables, which are built first. Whatever is never resolved is a draw.
+// Usage: java TablebaseGenerator <directory> <material>...   e.g. KQK KRK KQKR KBNK
+public class TablebaseGenerator {
+    private static final int MAX_PLIES = 126; // Longest distance a signed byte can hold
+
+    private static final byte UNKNOWN = 0;
+    private static final byte INVALID = 1;
+    private static final byte WIN = 2;
+    private static final byte LOSS = 3;
+    private static final byte DRAW = 4;
+
+    private final Path directory;
+    private final Tablebases tablebases;
+
+    // Per index while a table is being built
+    private int[] pieces;
+    private byte[] status;
+    private byte[] plies;
+    private byte[] captureWin; // Plies to mate through the fastest winning capture, 0 if none
+    private byte[] captureLoss; // Plies to be mated after the slowest losing capture, 0 if none
+    private boolean[] canDraw; // Some capture reaches a draw, so the position is never lost
+    private byte[] candidate; // Level at which a move into a won position was last found
+
+    private final Position position = new Position();
+    private final int[] moves = new int[Position.MAX_MOVES];
+
+    public TablebaseGenerator(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.tablebases = new Tablebases(directory);
+    }
+
+    // Builds the table for the material and the smaller ones its captures lead to, skipping existing files
+    public void generate(String white, String black) throws IOException {
+        if (Tablebase.isSwapped(white, black)) {
+            generate(black, white);
+            return;
+        }
+        String name = white + black;
+        Path file = directory.resolve(name + Tablebases.SUFFIX);
+        if (name.length() <= 2 || Files.exists(file)) return;
+        for (int i = 1; i < white.length(); i++) {
+            generate(white.substring(0, i) + white.substring(i + 1), black);
+        }
+        for (int i = 1; i < black.length(); i++) {
+            generate(white, black.substring(0, i) + black.substring(i + 1));
+        }
+        long start = System.currentTimeMillis();
+        byte[] values = build(name);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeByte(pieces.length);
+            for (int piece : pieces) {
+                out.writeByte(piece);
+            }
+            out.write(new byte[Tablebase.HEADER_SIZE - 5 - pieces.length]);
+            out.write(values);
+        }
+        tablebases.load(file);
+        System.out.printf("%s: %d positions in %d ms%n", name, values.length, System.currentTimeMillis() - start);
+    }
+
+    private byte[] build(String name) {
+        pieces = Tablebase.parsePieces(name);
+        int size = Tablebase.size(pieces.length);
+        status = new byte[size];
+        plies = new byte[size];
+        captureWin = new byte[size];
+        captureLoss = new byte[size];
+        canDraw = new boolean[size];
+        candidate = new byte[size];
+
+        int lastCapture = initialize(size);
+        int[] squares = new int[pieces.length];
+        for (int level = 1; level <= MAX_PLIES; level++) {
+            int resolved = 0;
+            for (int index = 0; index < size; index++) {
+                if (status[index] == UNKNOWN && captureWin[index] == level) {
+                    resolve(index, WIN, level);
+                    resolved++;
+                }
+            }
+            for (int index = 0; index < size; index++) {
+                if ((status[index] == WIN || status[index] == LOSS) && plies[index] == level - 1) {
+                    resolved += retract(index, squares, level);
+                }
+            }
+            for (int index = 0; index < size; index++) {
+                if (status[index] == UNKNOWN && !canDraw[index] && captureWin[index] == 0
+                        && (candidate[index] == level || captureLoss[index] == level)
+                        && isLost(index, squares, level)) {
+                    resolve(index, LOSS, level);
+                    resolved++;
+                }
+            }
+            if (resolved == 0 && level > lastCapture) break;
+        }
+
+        byte[] values = new byte[size];
+        for (int index = 0; index < size; index++) {
+            if (status[index] == WIN) {
+                values[index] = plies[index];
+            } else if (status[index] == LOSS) {
+                values[index] = (byte) (-plies[index] - 1);
+            }
+        }
+        return values;
+    }
+
+    // Marks illegal indexes, mates and stalemates, and looks up every capture in the smaller tables.
+    // Returns the longest distance found through a capture.
+    private int initialize(int size) {
+        int[] squares = new int[pieces.length];
+        int lastCapture = 0;
+        for (int index = 0; index < size; index++) {
+            int side = Tablebase.decode(index, squares);
+            if (!setUp(squares, side) || Tablebase.index(pieces, squares, side) != index
+                    || position.isInCheck(side ^ 1)) {
+                status[index] = INVALID;
+                continue;
+            }
+            int count = position.generateMoves(moves);
+            if (count == 0) {
+                if (position.isInCheck(side)) {
+                    resolve(index, LOSS, 0);
+                } else {
+                    status[index] = DRAW;
+                }
+                continue;
+            }
+            for (int i = 0; i < count; i++) {
+                if (!Position.isCapture(moves[i])) continue;
+                position.makeMove(moves[i]);
+                int value = tablebases.probe(position);
+                position.unmakeMove(moves[i]);
+                if (value == Tablebases.NOT_FOUND) {
+                    throw new IllegalStateException("Missing table for a capture from " + Arrays.toString(squares));
+                } else if (value == 0) {
+                    canDraw[index] = true;
+                } else if (value > 0) {
+                    captureLoss[index] = (byte) Math.max(captureLoss[index], value + 1);
+                } else if (captureWin[index] == 0 || -value < captureWin[index]) {
+                    captureWin[index] = (byte) -value;
+                }
+            }
+            lastCapture = Math.max(lastCapture, Math.max(captureWin[index], captureLoss[index]));
+        }
+        return lastCapture;
+    }
+
+    // Takes back every move that could have led to the position, which was resolved at the previous level.
+    // Predecessors of a lost position are won; those of a won position become candidates to be lost.
+    private int retract(int index, int[] squares, int level) {
+        int side = Tablebase.decode(index, squares);
+        setUp(squares, side);
+        int mover = side ^ 1;
+        int resolved = 0;
+        for (int i = 0; i < pieces.length; i++) {
+            if (Position.colorOf(pieces[i]) != mover) continue;
+            int from = squares[i];
+            long targets = attacks(Position.typeOf(pieces[i]), from, position.occupied) & ~position.occupied;
+            while (targets != 0) {
+                int to = Long.numberOfTrailingZeros(targets);
+                targets &= targets - 1;
+                position.remove(from);
+                position.put(pieces[i], to);
+                boolean legal = !position.isInCheck(side); // The side that did not move cannot be in check
+                position.remove(to);
+                position.put(pieces[i], from);
+                if (!legal) continue;
+                squares[i] = to;
+                int previous = Tablebase.index(pieces, squares, mover);
+                squares[i] = from;
+                if (status[previous] != UNKNOWN) continue;
+                if (status[index] == LOSS) {
+                    resolve(previous, WIN, level);
+                    resolved++;
+                } else {
+                    candidate[previous] = (byte) level;
+                }
+            }
+        }
+        return resolved;
+    }
+
+    // True if every move of the position leads to a position won for the opponent by the previous level
+    private boolean isLost(int index, int[] squares, int level) {
+        if (captureLoss[index] > level) return false;
+        int side = Tablebase.decode(index, squares);
+        setUp(squares, side);
+        int count = position.generateMoves(moves);
+        int[] next = new int[pieces.length];
+        for (int i = 0; i < count; i++) {
+            if (Position.isCapture(moves[i])) continue; // Already known to lose in time
+            for (int j = 0; j < pieces.length; j++) {
+                next[j] = squares[j] == Position.moveFrom(moves[i]) ? Position.moveTo(moves[i]) : squares[j];
+            }
+            int child = Tablebase.index(pieces, next, side ^ 1);
+            if (status[child] != WIN || plies[child] >= level) return false;
+        }
+        return true;
+    }
+
+    private void resolve(int index, byte result, int distance) {
+        status[index] = result;
+        plies[index] = (byte) distance;
+    }
+
+    // Places the pieces on the reused position; false if two share a square
+    private boolean setUp(int[] squares, int side) {
+        while (position.occupied != 0) {
+            position.remove(Long.numberOfTrailingZeros(position.occupied));
+        }
+        for (int i = 0; i < pieces.length; i++) {
+            if (position.pieceAt(squares[i]) != Position.EMPTY) return false;
+            position.put(pieces[i], squares[i]);
+        }
+        position.sideToMove = side;
+        position.castling = 0;
+        position.epSquare = -1;
+        return true;
+    }
+
+    private static long attacks(int type, int sq, long occupied) {
+        switch (type) {
+            case Position.KNIGHT: return Bitboards.KNIGHT_ATTACKS[sq];
+            case Position.BISHOP: return Bitboards.bishopAttacks(sq, occupied);
+            case Position.ROOK: return Bitboards.rookAttacks(sq, occupied);
+            case Position.QUEEN: return Bitboards.bishopAttacks(sq, occupied) | Bitboards.rookAttacks(sq, occupied);
+            default: return Bitboards.KING_ATTACKS[sq];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: java TablebaseGenerator <directory> <material>...   e.g. KQK KRK KQKR");
+            System.exit(1);
+        }
+        TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]));
+        for (int i = 1; i < args.length; i++) {
+            String name = args[i].toUpperCase();
+            int split = name.indexOf('K', 1);
+            if (split < 0) throw new IllegalArgumentException("Not a pawnless material set: " + args[i]);
+            Tablebase.parsePieces(name); // Validates the name
+            generator.generate(name.substring(0, split), name.substring(split));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// The Tablebase files (*.ctb, built by TablebaseGenerator) in one directory, memory-mapped so probing only
+// touches the page holding the position. Safe to probe from several search threads.
+// Tables are found by a material signature computed from the piece counts, so a probe allocates nothing.
+public class Tablebases {
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+    static final String SUFFIX = ".ctb";
+    private static final int COUNT_BITS = 2; // Enough for the pieces of one type in a table of MAX_PIECES
+    private static final int SIDE_BITS = 4 * COUNT_BITS; // Knights, bishops, rooks and queens
+
+    // By the signature of White's and Black's material: the table, and whether it has the colours exchanged.
+    // Filled before maxPieces is written, which probe reads first.
+    private final Tablebase[] tables = new Tablebase[1 << (2 * SIDE_BITS)];
+    private final boolean[] swapped = new boolean[1 << (2 * SIDE_BITS)];
+    private int count;
+    private volatile int maxPieces = 2; // King against king needs no table
+
+    public Tablebases(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                load(file);
+            }
+        }
+    }
+
+    void load(Path file) throws IOException {
+        String fileName = file.getFileName().toString();
+        String name = fileName.substring(0, fileName.length() - SUFFIX.length());
+        Tablebase table;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            table = new Tablebase(name, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Not a tablebase file: " + file, e);
+        }
+        int white = 0;
+        int black = 0;
+        for (int piece : table.pieces) {
+            if (Position.typeOf(piece) == Position.KING) continue;
+            int one = 1 << (COUNT_BITS * (Position.typeOf(piece) - Position.KNIGHT));
+            if (Position.colorOf(piece) == Position.WHITE) {
+                white += one;
+            } else {
+                black += one;
+            }
+        }
+        int direct = white << SIDE_BITS | black;
+        int exchanged = black << SIDE_BITS | white;
+        if (tables[direct] == null) count++;
+        tables[direct] = table;
+        swapped[direct] = false;
+        if (tables[exchanged] == null) { // The same material with the colours exchanged, unless it has a file too
+            tables[exchanged] = table;
+            swapped[exchanged] = true;
+        }
+        maxPieces = Math.max(maxPieces, name.length());
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Most pieces on the board (kings included) that any loaded table covers
+    public int getMaxPieces() {
+        return maxPieces;
+    }
+
+    // Distance to mate of the position from the side to move's view, encoded as in Tablebase: v > 0 mates
+    // in v plies, v < 0 is mated in -v - 1 plies, 0 is a draw. NOT_FOUND without a table for the material.
+    public int probe(Position position) {
+        if (Long.bitCount(position.occupied) > maxPieces || position.castling != 0
+                || (position.pieces[Position.piece(Position.WHITE, Position.PAWN)]
+                        | position.pieces[Position.piece(Position.BLACK, Position.PAWN)]) != 0) {
+            return NOT_FOUND;
+        }
+        if (Long.bitCount(position.occupied) == 2) return 0;
+        int signature = signature(position, Position.WHITE) << SIDE_BITS | signature(position, Position.BLACK);
+        Tablebase table = tables[signature];
+        return table != null ? table.probe(position, swapped[signature]) : NOT_FOUND;
+    }
+
+    // The side's knight, bishop, rook and queen counts, COUNT_BITS each; only called with few pieces on the board
+    private static int signature(Position position, int color) {
+        int signature = 0;
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+            signature |= Long.bitCount(position.pieces[Position.piece(color, type)]) << (COUNT_BITS * (type - Position.KNIGHT));
+        }
+        return signature;
+    }
+}
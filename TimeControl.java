@@ -0,0 +1,88 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// A time control of one or more periods, written like the PGN TimeControl tag with an optional delay:
+// "300+2" is 5 minutes with a 2-second increment, "40/5400+30:1800+30" is 40 moves in 90 minutes followed
+// by 30 minutes for the rest of the game, and "300d3" is 5 minutes with a 3-second delay (the clock only
+// starts running 3 seconds into each move). Times are in seconds and may have decimals. A last period with a
+// move count repeats, as in classical play.
+public final class TimeControl {
+    private final List<Period> periods;
+
+    // Moves to play in the period (0 for the rest of the game), the time it adds, and its increment and delay,
+    // all in milliseconds
+    static final class Period {
+        final int moves;
+        final long time;
+        final long increment;
+        final long delay;
+
+        Period(int moves, long time, long increment, long delay) {
+            this.moves = moves;
+            this.time = time;
+            this.increment = increment;
+            this.delay = delay;
+        }
+    }
+
+    private TimeControl(List<Period> periods) {
+        this.periods = periods;
+    }
+
+    public static TimeControl parse(String text) {
+        List<Period> periods = new ArrayList<>();
+        for (String period : text.trim().split(":")) {
+            try {
+                int slash = period.indexOf('/');
+                int moves = slash < 0 ? 0 : Integer.parseInt(period.substring(0, slash));
+                String rest = period.substring(slash + 1);
+                long delay = 0;
+                int d = rest.indexOf('d');
+                if (d >= 0) {
+                    delay = millis(rest.substring(d + 1));
+                    rest = rest.substring(0, d);
+                }
+                long increment = 0;
+                int plus = rest.indexOf('+');
+                if (plus >= 0) {
+                    increment = millis(rest.substring(plus + 1));
+                    rest = rest.substring(0, plus);
+                }
+                long time = millis(rest);
+                if (moves < 0 || (time <= 0 && periods.isEmpty())) throw new NumberFormatException();
+                periods.add(new Period(moves, time, increment, delay));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad time control period: " + period);
+            }
+        }
+        return new TimeControl(periods);
+    }
+
+    private static long millis(String seconds) {
+        double value = Double.parseDouble(seconds);
+        if (!(value >= 0)) throw new NumberFormatException(seconds);
+        return Math.round(value * 1000);
+    }
+
+    // The period with the given index, counting from 0; past the last one, the last one again
+    Period period(int index) {
+        return periods.get(Math.min(index, periods.size() - 1));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Period period : periods) {
+            if (text.length() > 0) text.append(':');
+            if (period.moves > 0) text.append(period.moves).append('/');
+            text.append(seconds(period.time));
+            if (period.increment > 0) text.append('+').append(seconds(period.increment));
+            if (period.delay > 0) text.append('d').append(seconds(period.delay));
+        }
+        return text.toString();
+    }
+
+    private static String seconds(long millis) {
+        return millis % 1000 == 0 ? Long.toString(millis / 1000) : Double.toString(millis / 1000.0);
+    }
+}
@@ -0,0 +1,24 @@
+public class TimeManager {
+    private static final int DEFAULT_MOVES_TO_GO = 30; // Assume the game lasts this many more moves
+    private static final long SAFETY_MARGIN = 50; // Milliseconds kept back for move overhead
+    private static final long MINIMUM_BUDGET = 10;
+
+    private final int movesToGo;
+
+    public TimeManager() {
+        this(DEFAULT_MOVES_TO_GO);
+    }
+
+    public TimeManager(int movesToGo) {
+        this.movesToGo = movesToGo;
+    }
+
+    // Time to spend on the next move, in milliseconds, given the clock and the per-move increment
+    public long budgetFor(long remainingMillis, long incrementMillis) {
+        long usable = Math.max(0, remainingMillis - SAFETY_MARGIN);
+        long budget = usable / movesToGo + incrementMillis * 3 / 4;
+        // Never plan to use more than a quarter of what is left, however large the increment
+        budget = Math.min(budget, usable / 4);
+        return Math.max(MINIMUM_BUDGET, budget);
+    }
+}
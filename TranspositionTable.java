@@ -0,0 +1,140 @@
+import java.util.Arrays;
+
+public class TranspositionTable {
+    public static final int EXACT = 1;
+    public static final int LOWER_BOUND = 2;
+    public static final int UPPER_BOUND = 3;
+
+    private static final int BUCKET_SIZE = 2; // Entries per bucket
+    private static final int ENTRY_BYTES = 16; // One long for the key, one for the data
+
+    // Entry i of bucket b lives at keys[b * BUCKET_SIZE + i] / data[b * BUCKET_SIZE + i].
+    // Data layout: move (bits 0-17), depth (18-25), bound (26-27), age (28-31), score (32-63).
+    // A data word of 0 means the slot is empty; stored entries always have a non-zero bound.
+    // Search threads share the table without locks: the key slot holds key ^ data, so an entry
+    // torn by a concurrent write fails the key check instead of returning another position's data.
+    private long[] keys;
+    private long[] data;
+    private int bucketMask;
+    private int age;
+    private long probes;
+    private long hits;
+
+    public TranspositionTable(int megabytes) {
+        resize(megabytes);
+    }
+
+    public void resize(int megabytes) {
+        long entries = Math.max(BUCKET_SIZE, (long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+        int buckets = Integer.highestOneBit((int) Math.min(entries / BUCKET_SIZE, 1 << 28));
+        keys = new long[buckets * BUCKET_SIZE];
+        data = new long[buckets * BUCKET_SIZE];
+        bucketMask = buckets - 1;
+        age = 0;
+        resetStatistics();
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(data, 0L);
+        age = 0;
+        resetStatistics();
+    }
+
+    // Called once per search so entries from earlier searches are replaced first
+    public void newSearch() {
+        age = (age + 1) & 15;
+    }
+
+    public long probe(long key) {
+        int index = ((int) key & bucketMask) * BUCKET_SIZE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry != 0 && (keys[i] ^ entry) == key) {
+                return entry;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int depth, int bound, int score) {
+        int index = ((int) key & bucketMask) * BUCKET_SIZE;
+        int replace = index;
+        int worst = Integer.MAX_VALUE;
+        for (int i = index; i < index + BUCKET_SIZE; i++) {
+            long entry = data[i];
+            if (entry == 0 || (keys[i] ^ entry) == key) {
+                replace = i;
+                if (entry != 0 && move == 0) move = move(entry); // Keep the old best move
+                break;
+            }
+            // Prefer to overwrite shallow entries and entries left over from older searches
+            int value = depth(entry) - 8 * ((age - age(entry)) & 15);
+            if (value < worst) {
+                worst = value;
+                replace = i;
+            }
+        }
+        long entry = (move & 0x3FFFFL) | ((long) (depth & 0xFF) << 18) | ((long) bound << 26)
+                | ((long) age << 28) | ((long) score << 32);
+        keys[replace] = key ^ entry;
+        data[replace] = entry;
+    }
+
+    public static int move(long entry) {
+        return (int) (entry & 0x3FFFF);
+    }
+
+    public static int depth(long entry) {
+        return (int) ((entry >>> 18) & 0xFF);
+    }
+
+    public static int bound(long entry) {
+        return (int) ((entry >>> 26) & 3);
+    }
+
+    private static int age(long entry) {
+        return (int) ((entry >>> 28) & 15);
+    }
+
+    public static int score(long entry) {
+        return (int) (entry >> 32);
+    }
+
+    // Search threads count their own probes and add them here once a search ends
+    public synchronized void addStatistics(long probes, long hits) {
+        this.probes += probes;
+        this.hits += hits;
+    }
+
+    public synchronized long getProbes() {
+        return probes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized double getHitRate() {
+        return probes == 0 ? 0.0 : (double) hits / probes;
+    }
+
+    // Fraction of slots (sampled over the first thousand) holding an entry from the current search, in permille
+    public int getOccupancyPermille() {
+        int sample = Math.min(1000, data.length);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            if (data[i] != 0 && age(data[i]) == age) used++;
+        }
+        return used * 1000 / sample;
+    }
+
+    public int getSizeMegabytes() {
+        return (int) ((long) keys.length * ENTRY_BYTES / (1024 * 1024));
+    }
+
+    public synchronized void resetStatistics() {
+        probes = 0;
+        hits = 0;
+    }
+}
@@ -0,0 +1,272 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Runs ChessAI as a UCI engine over standard input and output, for tournament managers and servers without
+// a display. Uses only Position and the search classes, so no AWT or Swing class is ever loaded.
+// Usage: java UciEngine
+public class UciEngine {
+    private static final String NAME = "ChessInJava";
+    private static final int MAX_DEPTH = 64;
+    private static final int DEFAULT_HASH_MB = 16;
+
+    private final ChessAI ai = new ChessAI(DEFAULT_HASH_MB);
+    private final PrintStream out;
+    private Position position = Position.fromFen(Position.START_FEN);
+
+    // The running search, if any
+    private Thread searchThread;
+    private AtomicBoolean stop;
+    private AtomicLong deadline;
+    private long ponderBudget; // Time for the move once a "go ponder" search gets "ponderhit"
+    private final Object waitLock = new Object();
+    private boolean waitForStop; // "go infinite" and "go ponder" may only answer after "stop" or "ponderhit"
+
+    public UciEngine(PrintStream out) {
+        this.out = out;
+    }
+
+    public void run(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line.trim())) break;
+        }
+        stopSearch();
+        ai.shutdown();
+    }
+
+    // Handles one command; false after "quit"
+    boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "uci":
+                send("id name " + NAME);
+                send("id author " + NAME + " authors");
+                send("option name Hash type spin default " + DEFAULT_HASH_MB + " min 1 max 4096");
+                send("option name Threads type spin default 1 min 1 max 256");
+                send("option name TablebasePath type string default <empty>");
+                send("uciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "ucinewgame":
+                stopSearch();
+                ai.newGame();
+                break;
+            case "setoption":
+                stopSearch();
+                setOption(line);
+                break;
+            case "position":
+                stopSearch();
+                setPosition(tokens);
+                break;
+            case "go":
+                stopSearch();
+                go(tokens);
+                break;
+            case "stop":
+                stopSearch();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                return false;
+            default:
+                break; // Unknown commands are ignored, as the protocol asks
+        }
+        return true;
+    }
+
+    // setoption name <name> [value <value>]; names may contain spaces
+    private void setOption(String line) {
+        int nameAt = line.indexOf(" name ");
+        if (nameAt < 0) return;
+        int valueAt = line.indexOf(" value ");
+        String name = (valueAt < 0 ? line.substring(nameAt + 6) : line.substring(nameAt + 6, valueAt)).trim();
+        String value = valueAt < 0 ? "" : line.substring(valueAt + 7).trim();
+        try {
+            switch (name.toLowerCase()) {
+                case "hash":
+                    ai.setHashSize(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    ai.setThreads(Integer.parseInt(value));
+                    break;
+                case "tablebasepath":
+                    ai.setTablebases(value.isEmpty() || value.equals("<empty>") ? null
+                            : new Tablebases(Paths.get(value)));
+                    break;
+                default:
+                    send("info string unknown option " + name);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            send("info string cannot set " + name + ": " + e.getMessage());
+        }
+    }
+
+    // position [startpos | fen <fen>] [moves <move>...]
+    // A position that cannot be read is reported and leaves the current one in place, whatever went wrong
+    private void setPosition(String[] tokens) {
+        try {
+            int i = 1;
+            Position next;
+            if (tokens.length > 1 && tokens[1].equals("fen")) {
+                StringBuilder fen = new StringBuilder();
+                for (i = 2; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                    fen.append(tokens[i]).append(' ');
+                }
+                next = Position.fromFen(fen.toString().trim());
+            } else {
+                next = Position.fromFen(Position.START_FEN);
+                i = 2;
+            }
+            if (next.isInCheck(next.getSideToMove() ^ 1)) {
+                send("info string bad position: the side not to move is in check");
+                return;
+            }
+            if (i < tokens.length && tokens[i].equals("moves")) {
+                for (i++; i < tokens.length; i++) {
+                    int move = next.parseUci(tokens[i]);
+                    if (move == 0) {
+                        send("info string illegal move " + tokens[i]);
+                        break;
+                    }
+                    next.makeMove(move);
+                }
+            }
+            position = next;
+        } catch (RuntimeException e) {
+            send("info string bad position: " + e.getMessage());
+        }
+    }
+
+    // go [wtime|btime|winc|binc|movestogo|movetime|depth|nodes <n>] [infinite] [ponder]
+    private void go(String[] tokens) {
+        long wtime = -1, btime = -1, winc = 0, binc = 0, movetime = -1, nodes = Long.MAX_VALUE;
+        int movesToGo = 0;
+        int depth = MAX_DEPTH;
+        boolean infinite = false;
+        boolean ponder = false;
+        for (int i = 1; i < tokens.length; i++) {
+            String value = i + 1 < tokens.length ? tokens[i + 1] : "0";
+            try {
+                switch (tokens[i]) {
+                    case "wtime": wtime = Long.parseLong(value); i++; break;
+                    case "btime": btime = Long.parseLong(value); i++; break;
+                    case "winc": winc = Long.parseLong(value); i++; break;
+                    case "binc": binc = Long.parseLong(value); i++; break;
+                    case "movestogo": movesToGo = Integer.parseInt(value); i++; break;
+                    case "movetime": movetime = Long.parseLong(value); i++; break;
+                    case "depth": depth = Math.max(1, Math.min(MAX_DEPTH, Integer.parseInt(value))); i++; break;
+                    case "nodes": nodes = Long.parseLong(value); i++; break;
+                    case "infinite": infinite = true; break;
+                    case "ponder": ponder = true; break;
+                    default: break;
+                }
+            } catch (NumberFormatException e) {
+                send("info string bad value for " + tokens[i]);
+            }
+        }
+
+        boolean white = position.getSideToMove() == Position.WHITE;
+        long remaining = white ? wtime : btime;
+        long budget = movetime >= 0 ? movetime
+                : remaining >= 0 ? (movesToGo > 0 ? new TimeManager(movesToGo) : new TimeManager())
+                        .budgetFor(remaining, white ? winc : binc)
+                : -1; // No clock: search until depth, nodes or stop
+        ponderBudget = budget;
+        long start = System.nanoTime();
+        Position root = new Position(position);
+        stop = new AtomicBoolean();
+        deadline = new AtomicLong(budget < 0 || infinite || ponder ? Long.MAX_VALUE
+                : start + Math.max(1, budget) * 1_000_000L);
+        synchronized (waitLock) {
+            waitForStop = infinite || ponder;
+        }
+        ai.setNodeLimit(nodes);
+
+        AtomicBoolean searchStop = stop;
+        AtomicLong searchDeadline = deadline;
+        int maxDepth = depth;
+        // The GUI waits for a bestmove, so one is sent even if the search fails
+        searchThread = new Thread(() -> {
+            int move = 0;
+            try {
+                int bookMove = ai.bookMove(root);
+                move = bookMove != 0 ? bookMove : ai.findBestMove(root, maxDepth, searchDeadline, searchStop,
+                        (completed, score, searched) -> sendInfo(root, completed, score, searched, start));
+            } catch (RuntimeException e) {
+                send("info string search failed: " + e);
+            }
+            synchronized (waitLock) {
+                while (waitForStop && !searchStop.get()) {
+                    try {
+                        waitLock.wait();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+            }
+            send("bestmove " + (move != 0 ? Position.moveToString(move) : "0000"));
+        }, "uci-search");
+        searchThread.start();
+    }
+
+    // The opponent played the expected move: the ponder search becomes the real one, timed from now
+    private void ponderHit() {
+        if (searchThread == null) return;
+        if (ponderBudget >= 0) deadline.set(System.nanoTime() + Math.max(1, ponderBudget) * 1_000_000L);
+        synchronized (waitLock) {
+            waitForStop = false;
+            waitLock.notifyAll();
+        }
+    }
+
+    // Ends the running search, which sends its bestmove, and waits for it
+    private void stopSearch() {
+        if (searchThread == null) return;
+        stop.set(true);
+        synchronized (waitLock) {
+            waitLock.notifyAll();
+        }
+        try {
+            searchThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        searchThread = null;
+    }
+
+    private void sendInfo(Position root, int depth, int score, long nodes, long start) {
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+        String value;
+        if (score > Search.CHECKMATE_SCORE - Search.MAX_PLY) {
+            value = "mate " + (Search.CHECKMATE_SCORE - score + 1) / 2;
+        } else if (score < -Search.CHECKMATE_SCORE + Search.MAX_PLY) {
+            value = "mate -" + (Search.CHECKMATE_SCORE + score) / 2;
+        } else {
+            value = "cp " + score;
+        }
+        int best = TranspositionTable.move(ai.getTranspositionTable().probe(root.getKey()));
+        send("info depth " + depth + " score " + value + " nodes " + nodes + " nps " + nodes * 1000 / elapsed
+                + " time " + elapsed + (best != 0 ? " pv " + Position.moveToString(best) : ""));
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        new UciEngine(System.out).run(new BufferedReader(new InputStreamReader(System.in)));
+    }
+}
@@ -0,0 +1,35 @@
+import java.util.Random;
+
+public final class Zobrist {
+    static final long[][] PIECES = new long[12][64];
+    static final long[] CASTLING = new long[16];
+    static final long[] EN_PASSANT_FILE = new long[8];
+    static final long SIDE;
+
+    static {
+        // Fixed seed so keys are stable between runs and can be stored on disk
+        Random random = new Random(0x2F6A_91C3_7D05_B8E4L);
+        for (long[] squares : PIECES) {
+            for (int sq = 0; sq < 64; sq++) {
+                squares[sq] = random.nextLong();
+            }
+        }
+        long[] rights = new long[4];
+        for (int i = 0; i < 4; i++) {
+            rights[i] = random.nextLong();
+        }
+        // Each castling right has its own key; a combination of rights is the XOR of its parts
+        for (int mask = 0; mask < 16; mask++) {
+            for (int i = 0; i < 4; i++) {
+                if ((mask & (1 << i)) != 0) CASTLING[mask] ^= rights[i];
+            }
+        }
+        for (int file = 0; file < 8; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+        SIDE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+}